@@ -0,0 +1,172 @@
+package com.example.tictactoerest.benchmarks;
+
+import com.example.tictactoerest.entities.BitBoard;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the game rules: placing tokens and checking
+ * for a winner or a draw after each move. The BitBoard checks are
+ * timed on their own, and through Game the way GameService makes a
+ * move.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GameEngineBenchmark
+{
+    //row and column of each move in a game that ends in a draw
+    static final int[][] DRAW = {
+            {0, 0}, {1, 1}, {2, 2}, {0, 2}, {2, 0}, {1, 0}, {1, 2}, {2, 1}, {0, 1}
+    };
+
+    //row and column of each move in a game that player X wins
+    static final int[][] X_WINS = {{0, 0}, {1, 1}, {0, 1}, {2, 2}, {0, 2}};
+
+    private Player playerX;
+    private Player playerO;
+    private BitBoard[] positions;
+
+    //the game before each move of the draw above, and before the winning move of X_WINS
+    private Game[] games;
+    private Game beforeWin;
+
+    @Setup
+    public void setup()
+    {
+        playerX = Player.builder().playerId(1).name("x").build();
+        playerO = Player.builder().playerId(2).name("o").build();
+
+        //every position from the draw above
+        Game game = newGame();
+        positions = new BitBoard[DRAW.length];
+        for (int i = 0; i < DRAW.length; i++)
+        {
+            game.move(i % 2 == 0 ? playerX : playerO, DRAW[i][0], DRAW[i][1]);
+            BitBoard board = game.getBoard();
+            positions[i] = new BitBoard(board.getXMask(), board.getOMask());
+        }
+
+        game = newGame();
+        games = new Game[DRAW.length];
+        for (int i = 0; i < DRAW.length; i++)
+        {
+            games[i] = game.copy();
+            game.move(i % 2 == 0 ? playerX : playerO, DRAW[i][0], DRAW[i][1]);
+        }
+
+        beforeWin = newGame();
+        for (int i = 0; i < X_WINS.length - 1; i++)
+        {
+            beforeWin.move(i % 2 == 0 ? playerX : playerO, X_WINS[i][0], X_WINS[i][1]);
+        }
+    }
+
+    private Game newGame()
+    {
+        return Game.builder()
+                .playerX(playerX)
+                .playerO(playerO)
+                .build();
+    }
+
+    /**
+     * A full game of nine calls to Game.move(), each one updating
+     * the draw and gameover status.
+     */
+    @Benchmark
+    public Game playGame()
+    {
+        Game game = newGame();
+        for (int i = 0; i < DRAW.length; i++)
+        {
+            game.move(i % 2 == 0 ? playerX : playerO, DRAW[i][0], DRAW[i][1]);
+        }
+        return game;
+    }
+
+    /**
+     * The winner check made by Game.determineIfGameover().
+     */
+    @Benchmark
+    public void determineIfGameover(Blackhole blackhole)
+    {
+        for (BitBoard position : positions)
+        {
+            blackhole.consume(position.hasWinner());
+        }
+    }
+
+    /**
+     * The full board check made by Game.determineIfDraw().
+     */
+    @Benchmark
+    public void determineIfDraw(Blackhole blackhole)
+    {
+        for (BitBoard position : positions)
+        {
+            blackhole.consume(position.isFull());
+        }
+    }
+
+    /**
+     * Each move of the draw above, from its position, with the calls
+     * GameService.move() makes on the game: the preconditions, a copy
+     * to restore on failure, Game.move() with its winner and draw
+     * checks, the status read, and the copy returned to the caller.
+     */
+    @Benchmark
+    public void serviceMove(Blackhole blackhole)
+    {
+        for (int i = 0; i < games.length; i++)
+        {
+            Game game = games[i].copy();
+            Player player = i % 2 == 0 ? playerX : playerO;
+            if (game.isGameOver() || !game.isPlayerInMatch(player) || !game.isPlayerTurn(player))
+            {
+                throw new IllegalStateException("Move " + i + " is not allowed");
+            }
+
+            blackhole.consume(game.copy());
+            game.move(player, DRAW[i][0], DRAW[i][1]);
+            blackhole.consume(game.isDraw() || game.isGameOver());
+            blackhole.consume(game.copy());
+        }
+    }
+
+    /**
+     * The move that completes a line, through Game.move(), which
+     * finds the winner and records the finish time.
+     */
+    @Benchmark
+    public boolean winningMove()
+    {
+        Game game = beforeWin.copy();
+        int[] last = X_WINS[X_WINS.length - 1];
+        game.move(playerX, last[0], last[1]);
+        return game.isGameOver();
+    }
+
+    /**
+     * The move that fills the board, through Game.move(), which
+     * finds the draw and records the finish time.
+     */
+    @Benchmark
+    public boolean drawingMove()
+    {
+        Game game = games[DRAW.length - 1].copy();
+        int[] last = DRAW[DRAW.length - 1];
+        game.move(playerX, last[0], last[1]);
+        return game.isDraw();
+    }
+}
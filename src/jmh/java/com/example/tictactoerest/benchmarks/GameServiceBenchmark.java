@@ -0,0 +1,122 @@
+package com.example.tictactoerest.benchmarks;
+
+import com.example.tictactoerest.TicTacToeRestApplication;
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.service.GameService;
+import com.example.tictactoerest.service.PlayerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the game service layer against the H2 datasource
+ * configured in application.properties.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameServiceBenchmark
+{
+    //row and column of each move in a game that player X wins
+    private static final int[][] X_WINS = {{0, 0}, {1, 1}, {0, 1}, {2, 2}, {0, 2}};
+
+    /**
+     * The application context, shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Application
+    {
+        ConfigurableApplicationContext context;
+        GameService games;
+        PlayerService players;
+
+        @Setup(Level.Trial)
+        public void start()
+        {
+            context = new SpringApplicationBuilder(TicTacToeRestApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("spring.main.banner-mode=off", "logging.level.root=warn")
+                    .run();
+            games = context.getBean(GameService.class);
+            players = context.getBean(PlayerService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop()
+        {
+            context.close();
+        }
+    }
+
+    /**
+     * A pair of players for each benchmark thread, so that threads
+     * never make moves in the same game.
+     */
+    @State(Scope.Thread)
+    public static class Match
+    {
+        int playerXId;
+        int playerOId;
+        int gameId;
+        int ply;
+
+        @Setup(Level.Trial)
+        public void join(Application app)
+        {
+            playerXId = newPlayer(app);
+            playerOId = newPlayer(app);
+        }
+
+        private int newPlayer(Application app)
+        {
+            Player player = Player.builder().name(UUID.randomUUID().toString()).build();
+            return app.players.save(player).getPlayerId();
+        }
+    }
+
+    /**
+     * GameService.newGame() followed by the five moves needed to finish
+     * the game, so the same players can start another one.
+     */
+    @Benchmark
+    public Game newGameAndWin(Application app, Match match)
+    {
+        Game game = app.games.newGame(match.playerXId, match.playerOId);
+        for (int i = 0; i < X_WINS.length; i++)
+        {
+            int playerId = i % 2 == 0 ? match.playerXId : match.playerOId;
+            game = app.games.move(game.getGameId(), new GameMove(playerId, X_WINS[i][0], X_WINS[i][1]));
+        }
+        return game;
+    }
+
+    /**
+     * A single GameService.move(). The first call, and the call after
+     * each game ends in a draw, also starts a new game.
+     */
+    @Benchmark
+    public Game move(Application app, Match match)
+    {
+        if (match.gameId == 0 || match.ply == GameEngineBenchmark.DRAW.length)
+        {
+            match.gameId = app.games.newGame(match.playerXId, match.playerOId).getGameId();
+            match.ply = 0;
+        }
+
+        int[] cell = GameEngineBenchmark.DRAW[match.ply];
+        int playerId = match.ply % 2 == 0 ? match.playerXId : match.playerOId;
+        match.ply++;
+        return app.games.move(match.gameId, new GameMove(playerId, cell[0], cell[1]));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.tictactoerest.benchmarks;
+
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for writing the JSON bodies returned by the api.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark
+{
+    private ObjectMapper mapper;
+    private Player player;
+    private Game game;
+
+    @Setup
+    public void setup()
+    {
+        //configured the same way as the mapper Spring MVC uses
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+
+        player = Player.builder().playerId(1).name("x").wins(12).losses(3).draws(40).build();
+        Player other = Player.builder().playerId(2).name("o").wins(7).losses(9).draws(40).build();
+        game = Game.builder().gameId(1).playerX(player).playerO(other).build();
+        for (int i = 0; i < 4; i++)
+        {
+            int[] cell = GameEngineBenchmark.DRAW[i];
+            game.move(i % 2 == 0 ? player : other, cell[0], cell[1]);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeGame() throws JsonProcessingException
+    {
+        return mapper.writeValueAsBytes(game);
+    }
+
+    @Benchmark
+    public byte[] writePlayer() throws JsonProcessingException
+    {
+        return mapper.writeValueAsBytes(player);
+    }
+}
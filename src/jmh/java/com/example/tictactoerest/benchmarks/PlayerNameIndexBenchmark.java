@@ -0,0 +1,85 @@
+package com.example.tictactoerest.benchmarks;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.service.PlayerNameIndex;
+import com.example.tictactoerest.views.PlayerName;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for prefix searches of player names, with the index
+ * filled with generated names instead of players from the database.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlayerNameIndexBenchmark
+{
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Param({"1000000"})
+    public int players;
+
+    private PlayerNameIndex index;
+    private String[] names;
+    private String[] prefixes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill()
+    {
+        //names are only added with save(), so the index needs no data layer
+        index = new PlayerNameIndex(null);
+        names = new String[players];
+        Random random = new Random(1);
+        for (int i = 0; i < players; i++)
+        {
+            names[i] = name(random) + i;
+            index.save(Player.builder().playerId(i + 1).name(names[i]).build());
+        }
+
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            prefixes[i] = names[random.nextInt(players)].substring(0, 1 + i % 3).toUpperCase();
+        }
+    }
+
+    private static String name(Random random)
+    {
+        char[] name = new char[6 + random.nextInt(6)];
+        for (int i = 0; i < name.length; i++)
+        {
+            name[i] = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        }
+        return new String(name);
+    }
+
+    /**
+     * The first 20 players with a one to three letter prefix, as typed
+     * into a search box.
+     */
+    @Benchmark
+    public List<PlayerName> search()
+    {
+        return index.search(prefixes[next++ & (prefixes.length - 1)], 20);
+    }
+
+    /**
+     * An exact name lookup, as made before saving a new player.
+     */
+    @Benchmark
+    public boolean contains()
+    {
+        return index.contains(names[next++ % players]);
+    }
+}
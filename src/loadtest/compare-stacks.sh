@@ -0,0 +1,81 @@
+#!/usr/bin/env bash
+#
+# Compares the MVC api (with and without game actors) with the WebFlux
+# variant in src/reactive under the same load. Builds both jars, starts
+# each stack in turn on $PORT, runs LoadGenerator against it with --url,
+# and prints the summary of every stack. Full reports are kept in
+# target/loadtest/<stack>.log.
+#
+# Run from the project root, e.g.
+#
+#   src/loadtest/compare-stacks.sh
+#   CLIENTS=32,256 DURATION=20 WARMUP=3 src/loadtest/compare-stacks.sh
+#
+# The client and the server share the machine, so compare stacks with
+# each other rather than with numbers from other machines.
+
+set -euo pipefail
+
+CLIENTS=${CLIENTS:-32,256}
+DURATION=${DURATION:-20}
+WARMUP=${WARMUP:-3}
+MODE=${MODE:-scripted}
+PORT=${PORT:-8091}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+
+cd "$(dirname "$0")/../.."
+MAX_CLIENTS=$(tr ',' '\n' <<< "$CLIENTS" | sort -n | tail -1)
+PLAYERS=${PLAYERS:-$((MAX_CLIENTS * 2))}
+LOGS=target/loadtest
+
+#the reactive build goes to target/reactive, so it does not replace the main jar
+echo "Building the MVC and reactive jars and the load generator"
+mvn -B -q package -DskipTests
+mvn -B -q -P reactive package -DskipTests
+mvn -B -q -P loadtest test-compile
+MVC_JAR=$(ls target/tic-tac-toe-rest-*.jar | grep -v original | head -1)
+REACTIVE_JAR=$(ls target/reactive/tic-tac-toe-rest-*.jar | grep -v original | head -1)
+mkdir -p "$LOGS"
+
+SERVER=
+stop_server()
+{
+    if [ -n "$SERVER" ]
+    then
+        kill "$SERVER" 2>/dev/null || true
+        wait "$SERVER" 2>/dev/null || true
+        SERVER=
+    fi
+}
+trap stop_server EXIT
+
+#runs one stack: a name, a jar and the arguments of the application
+run_stack()
+{
+    local name=$1 jar=$2
+    shift 2
+    echo "Running $name"
+    "$JAVA" -jar "$jar" --server.port="$PORT" --logging.level.root=warn "$@" > "$LOGS/$name-server.log" 2>&1 &
+    SERVER=$!
+    for _ in $(seq 1 120)
+    do
+        curl -sf "http://localhost:$PORT/api/v1/player" > /dev/null && break
+        sleep 1
+    done
+
+    mvn -B -q -P loadtest exec:exec -Dloadtest.args="--url=http://localhost:$PORT --players=$PLAYERS \
+--clients=$CLIENTS --duration=$DURATION --warmup=$WARMUP --mode=$MODE" > "$LOGS/$name.log"
+    stop_server
+}
+
+run_stack mvc "$MVC_JAR"
+run_stack mvc-actors "$MVC_JAR" --tictactoe.actors.enabled=true
+run_stack reactive "$REACTIVE_JAR"
+
+for name in mvc mvc-actors reactive
+do
+    echo
+    echo "== $name"
+    sed -n '/^Summary/,$p' "$LOGS/$name.log"
+    grep -E '^(errors|games failed):' "$LOGS/$name.log" || echo "no errors"
+done
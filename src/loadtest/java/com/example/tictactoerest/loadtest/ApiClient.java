@@ -0,0 +1,138 @@
+package com.example.tictactoerest.loadtest;
+
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.entities.Player;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Calls the player and game endpoints and records the latency of each
+ * call in the current {@link LatencyReport}.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class ApiClient
+{
+    public static final String NEW_PLAYER = "POST /api/v1/player";
+    public static final String NEW_GAME = "POST /api/v1/game";
+    public static final String MOVE = "PUT /api/v1/game/{gameId}";
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private volatile LatencyReport report;
+
+    /**
+     * Creates a client for a running server.
+     *
+     * @param baseUrl the server, e.g. http://localhost:8080
+     * @param report the report to record calls in
+     */
+    public ApiClient(String baseUrl, LatencyReport report)
+    {
+        this.baseUrl = baseUrl;
+        this.report = report;
+    }
+
+    /**
+     * Records later calls in another report.
+     *
+     * @param report the report of the next stage
+     */
+    public void setReport(LatencyReport report)
+    {
+        this.report = report;
+    }
+
+    /**
+     * Returns the report calls are recorded in.
+     *
+     * @return the current report
+     */
+    public LatencyReport getReport()
+    {
+        return report;
+    }
+
+    /**
+     * Creates a player.
+     *
+     * @param name a name that is not in use
+     * @return the player id
+     */
+    public int newPlayer(String name)
+    {
+        return send(NEW_PLAYER, "POST", "/api/v1/player", Player.builder().name(name).build())
+                .get("playerId").asInt();
+    }
+
+    /**
+     * Starts a game.
+     *
+     * @param playerXId the id of player X
+     * @param playerOId the id of player O
+     * @return the new game
+     */
+    public JsonNode newGame(int playerXId, int playerOId)
+    {
+        return send(NEW_GAME, "POST", "/api/v1/game", new MatchUp(playerXId, playerOId));
+    }
+
+    /**
+     * Makes a move.
+     *
+     * @param gameId the game id
+     * @param move the move
+     * @return the game after the move
+     */
+    public JsonNode move(int gameId, GameMove move)
+    {
+        return send(MOVE, "PUT", "/api/v1/game/" + gameId, move);
+    }
+
+    //sends a JSON request and reads the JSON response, failing on an error status
+    private JsonNode send(String endpoint, String method, String path, Object body)
+    {
+        try
+        {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build();
+
+            long start = System.nanoTime();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            report.record(endpoint, response.statusCode(), System.nanoTime() - start);
+
+            if (response.statusCode() >= 400)
+            {
+                throw new IllegalStateException(String.format("%s returned %s: %s",
+                        endpoint, response.statusCode(), response.body()));
+            }
+            return mapper.readTree(response.body());
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", ex);
+        }
+    }
+}
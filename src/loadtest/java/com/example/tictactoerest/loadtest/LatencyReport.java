@@ -0,0 +1,196 @@
+package com.example.tictactoerest.loadtest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latencies and response codes of one stage of a load test, by
+ * endpoint. Requests are only recorded while the report is open, so
+ * warm-up requests and requests made after the stage ended are left out.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class LatencyReport
+{
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> errors = new ConcurrentHashMap<>();
+    private final Counter games = registry.counter("games");
+    private final ConcurrentMap<String, Counter> failures = new ConcurrentHashMap<>();
+
+    private volatile boolean open;
+    private long openedAt;
+    private long closedAt;
+
+    /**
+     * Starts recording requests.
+     */
+    public void open()
+    {
+        openedAt = System.nanoTime();
+        open = true;
+    }
+
+    /**
+     * Stops recording requests.
+     */
+    public void close()
+    {
+        open = false;
+        closedAt = System.nanoTime();
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param endpoint the method and route template, e.g. "PUT /api/v1/game/{gameId}"
+     * @param status the response status code
+     * @param nanos the time from sending the request to reading the response
+     */
+    public void record(String endpoint, int status, long nanos)
+    {
+        if (!open)
+        {
+            return;
+        }
+
+        timers.computeIfAbsent(endpoint, this::timer).record(nanos, TimeUnit.NANOSECONDS);
+        if (status >= 400)
+        {
+            errors.computeIfAbsent(endpoint + " " + status, key -> registry.counter("errors", "request", key)).increment();
+        }
+    }
+
+    //percentiles are kept for the whole stage, not a rolling window
+    private Timer timer(String endpoint)
+    {
+        return Timer.builder("request")
+                .tag("endpoint", endpoint)
+                .publishPercentiles(PERCENTILES)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    /**
+     * Records a game played to the end.
+     */
+    public void gameFinished()
+    {
+        if (open)
+        {
+            games.increment();
+        }
+    }
+
+    /**
+     * Records a game that could not be played to the end.
+     *
+     * @param ex the reason
+     */
+    public void gameFailed(RuntimeException ex)
+    {
+        if (open)
+        {
+            failures.computeIfAbsent(ex.getClass().getSimpleName(),
+                    type -> registry.counter("failures", "exception", type)).increment();
+        }
+    }
+
+    /**
+     * Returns the number of seconds the report was open.
+     *
+     * @return the length of the stage in seconds
+     */
+    public double seconds()
+    {
+        return (closedAt - openedAt) / 1e9;
+    }
+
+    /**
+     * Returns the number of requests recorded per second, for all endpoints.
+     *
+     * @return the throughput in requests per second
+     */
+    public double throughput()
+    {
+        long requests = 0;
+        for (Timer timer : timers.values())
+        {
+            requests += timer.count();
+        }
+        return requests / seconds();
+    }
+
+    /**
+     * Returns a percentile of the latency of an endpoint.
+     *
+     * @param endpoint the endpoint
+     * @param percentile 0.5, 0.95 or 0.99
+     * @return the latency in milliseconds, or 0 if the endpoint was not called
+     */
+    public double percentile(String endpoint, double percentile)
+    {
+        Timer timer = timers.get(endpoint);
+        if (timer == null)
+        {
+            return 0;
+        }
+
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues())
+        {
+            if (value.percentile() == percentile)
+            {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Prints a table of the throughput and latency of each endpoint,
+     * followed by the error responses and failed games.
+     *
+     * @param out where to print
+     */
+    public void print(PrintStream out)
+    {
+        out.printf("%-28s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet())
+        {
+            HistogramSnapshot snapshot = entry.getValue().takeSnapshot();
+            out.printf("%-28s %9d %9.1f", entry.getKey(), snapshot.count(), snapshot.count() / seconds());
+            for (double percentile : PERCENTILES)
+            {
+                out.printf(" %9.2f", percentile(entry.getKey(), percentile));
+            }
+            out.printf(" %9.2f%n", snapshot.max(TimeUnit.MILLISECONDS));
+        }
+        out.printf("games finished: %.0f (%.1f/s)%n", games.count(), games.count() / seconds());
+
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(errors).entrySet())
+        {
+            out.printf("errors: %s x %.0f%n", entry.getKey(), entry.getValue().count());
+        }
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(failures).entrySet())
+        {
+            out.printf("games failed: %s x %.0f%n", entry.getKey(), entry.getValue().count());
+        }
+    }
+}
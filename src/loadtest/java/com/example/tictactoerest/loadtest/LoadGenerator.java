@@ -0,0 +1,246 @@
+package com.example.tictactoerest.loadtest;
+
+import com.example.tictactoerest.TicTacToeRestApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates concurrent players against the api to find where it
+ * saturates. Starts the application on a free localhost port (or uses
+ * a running server given with --url), creates the players, and then
+ * runs one stage per client count: each virtual client takes a pair of
+ * players, starts a game with POST api/v1/game and plays it to the end
+ * with PUT api/v1/game/{gameId}, until the stage is over. Throughput and
+ * p50/p95/p99 latency per endpoint are printed after each stage, and a
+ * summary of all stages at the end.
+ *
+ * Run it with the loadtest profile, e.g.
+ *
+ * mvn -P loadtest test-compile exec:exec -Dloadtest.args="--clients=10,50,100 --duration=30"
+ *
+ * Options:
+ * --players=N         players to create (default 400, two per client are needed)
+ * --clients=A,B,...   virtual clients in each stage (default 10,25,50,100,200)
+ * --duration=S        seconds recorded in each stage (default 20)
+ * --warmup=S          seconds before recording starts in each stage (default 5)
+ * --mode=M            random (random legal moves) or scripted (a draw, an x win and an o win in turn)
+ * --seed=N            seed of the random moves (default 1)
+ * --url=U             a running server, e.g. http://localhost:8080, instead of starting one
+ *
+ * Other arguments, e.g. --tictactoe.actors.enabled=true, are passed to
+ * the application when it is started here.
+ *
+ * src/loadtest/compare-stacks.sh runs it with --url against the MVC
+ * build (with and without actors) and the reactive build in turn.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class LoadGenerator
+{
+    private int players = 400;
+    private List<Integer> clients = List.of(10, 25, 50, 100, 200);
+    private int duration = 20;
+    private int warmup = 5;
+    private boolean scripted = false;
+    private long seed = 1;
+    private String url;
+    private final List<String> appArgs = new ArrayList<>();
+
+    private final PrintStream out = System.out;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the options described above
+     * @throws InterruptedException if interrupted while waiting for a stage
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args)
+    {
+        for (String arg : args)
+        {
+            String[] option = arg.split("=", 2);
+            String value = option.length == 2 ? option[1] : "";
+            switch (option[0])
+            {
+                case "--players":
+                    players = Integer.parseInt(value);
+                    break;
+                case "--clients":
+                    clients = new ArrayList<>();
+                    for (String count : value.split(","))
+                    {
+                        clients.add(Integer.parseInt(count.trim()));
+                    }
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--mode":
+                    if (!value.equals("random") && !value.equals("scripted"))
+                    {
+                        throw new IllegalArgumentException(String.format("Unknown mode %s", value));
+                    }
+                    scripted = value.equals("scripted");
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--url":
+                    url = value;
+                    break;
+                default:
+                    appArgs.add(arg);
+            }
+        }
+    }
+
+    private void run() throws InterruptedException
+    {
+        ConfigurableApplicationContext context = null;
+        if (url == null)
+        {
+            context = start();
+            url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try
+        {
+            out.printf("Load test against %s: %d players, %s clients, %ss stages after %ss warm-up, %s moves%n",
+                    url, players, clients, duration, warmup, scripted ? "scripted" : "random");
+            int maxClients = clients.stream().max(Integer::compare).orElse(1);
+            if (players < maxClients * 2)
+            {
+                out.printf("Only %d pairs of players for %d clients, so some clients will wait for a pair%n",
+                        players / 2, maxClients);
+            }
+
+            LatencyReport setup = new LatencyReport();
+            ApiClient api = new ApiClient(url, setup);
+            BlockingQueue<int[]> pairs = createPlayers(api, setup, maxClients);
+
+            List<LatencyReport> stages = new ArrayList<>();
+            for (int stage = 0; stage < clients.size(); stage++)
+            {
+                stages.add(runStage(api, pairs, clients.get(stage), seed + stage * 100_000L));
+            }
+            printSummary(stages);
+        }
+        finally
+        {
+            if (context != null)
+            {
+                context.close();
+            }
+        }
+    }
+
+    //starts the application on a free port
+    private ConfigurableApplicationContext start()
+    {
+        //a devtools restart would run this main method again in a new class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(TicTacToeRestApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=warn")
+                .run(appArgs.toArray(new String[0]));
+    }
+
+    //creates the players in parallel and pairs them up
+    private BlockingQueue<int[]> createPlayers(ApiClient api, LatencyReport setup, int threads) throws InterruptedException
+    {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+        List<Future<Integer>> ids = new ArrayList<>(players);
+        setup.open();
+        for (int i = 0; i < players; i++)
+        {
+            String name = "load-" + run + "-" + i;
+            ids.add(pool.submit(() -> api.newPlayer(name)));
+        }
+
+        BlockingQueue<int[]> pairs = new LinkedBlockingQueue<>();
+        try
+        {
+            for (int i = 0; i + 1 < ids.size(); i += 2)
+            {
+                pairs.add(new int[]{ids.get(i).get(), ids.get(i + 1).get()});
+            }
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException("Could not create the players", ex.getCause());
+        }
+        finally
+        {
+            setup.close();
+            pool.shutdownNow();
+        }
+
+        out.printf("%nCreated %d players%n", players);
+        setup.print(out);
+        return pairs;
+    }
+
+    //runs the clients until the stage is over and returns what was recorded
+    private LatencyReport runStage(ApiClient api, BlockingQueue<int[]> pairs, int clientCount, long stageSeed)
+            throws InterruptedException
+    {
+        LatencyReport report = new LatencyReport();
+        api.setReport(report);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup + duration);
+        ExecutorService pool = Executors.newFixedThreadPool(clientCount);
+        for (int client = 0; client < clientCount; client++)
+        {
+            pool.execute(new VirtualClient(api, pairs, scripted, stageSeed + client, deadline));
+        }
+
+        TimeUnit.SECONDS.sleep(warmup);
+        report.open();
+        TimeUnit.NANOSECONDS.sleep(deadline - System.nanoTime());
+        report.close();
+
+        //the games being played are finished, so the next stage starts without active games
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+
+        out.printf("%nStage: %d clients, %.1fs%n", clientCount, report.seconds());
+        report.print(out);
+        return report;
+    }
+
+    //one line per stage, to show where throughput stops growing and latency climbs
+    private void printSummary(List<LatencyReport> stages)
+    {
+        out.printf("%nSummary%n%9s %9s %12s %12s %12s%n", "clients", "req/s", "move p50 ms", "move p95 ms", "move p99 ms");
+        for (int stage = 0; stage < stages.size(); stage++)
+        {
+            LatencyReport report = stages.get(stage);
+            out.printf("%9d %9.1f %12.2f %12.2f %12.2f%n", clients.get(stage), report.throughput(),
+                    report.percentile(ApiClient.MOVE, 0.5),
+                    report.percentile(ApiClient.MOVE, 0.95),
+                    report.percentile(ApiClient.MOVE, 0.99));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.tictactoerest.loadtest;
+
+import com.example.tictactoerest.commands.GameMove;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simulated client that plays games until a deadline. Each game is
+ * played between a pair of players taken from a shared queue, and the
+ * pair is returned once the game is over, so a player is never in two
+ * games at once. A game that is being played at the deadline is
+ * finished, so no games are left active for the next stage. A game
+ * that fails is counted and its pair of players is dropped.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class VirtualClient implements Runnable
+{
+    //cells of scripted games, in the order they are played (x moves first)
+    private static final int[][] SCRIPTS = {
+            {0, 1, 2, 4, 3, 5, 7, 6, 8}, //draw
+            {0, 3, 1, 4, 2},             //x wins on the top row
+            {0, 2, 3, 5, 7, 8}           //o wins on the right column
+    };
+
+    private final ApiClient api;
+    private final BlockingQueue<int[]> pairs;
+    private final boolean scripted;
+    private final Random random;
+    private final long deadline;
+    private int games = 0;
+
+    /**
+     * Creates a client.
+     *
+     * @param api the api client, shared by all clients
+     * @param pairs the pairs of player ids that are not in a game
+     * @param scripted true to play the scripted games in turn, false for random legal moves
+     * @param seed the seed of the random moves
+     * @param deadline when to stop starting games, from System.nanoTime()
+     */
+    public VirtualClient(ApiClient api, BlockingQueue<int[]> pairs, boolean scripted, long seed, long deadline)
+    {
+        this.api = api;
+        this.pairs = pairs;
+        this.scripted = scripted;
+        this.random = new Random(seed);
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (System.nanoTime() < deadline)
+            {
+                int[] pair = pairs.poll(100, TimeUnit.MILLISECONDS);
+                if (pair == null)
+                {
+                    continue; //more clients than pairs
+                }
+
+                try
+                {
+                    play(pair[0], pair[1]);
+                    pairs.add(pair);
+                }
+                catch (RuntimeException ex)
+                {
+                    //the players may still be in the failed game, so the pair is not used again
+                    api.getReport().gameFailed(ex);
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //plays one game to the end
+    private void play(int playerXId, int playerOId)
+    {
+        JsonNode game = api.newGame(playerXId, playerOId);
+        int gameId = game.get("gameId").asInt();
+
+        List<Integer> cells = cells();
+        for (int turn = 0; !game.get("gameOver").asBoolean() && !game.get("draw").asBoolean(); turn++)
+        {
+            int cell = cells.get(turn);
+            game = api.move(gameId, new GameMove(turn % 2 == 0 ? playerXId : playerOId, cell / 3, cell % 3));
+        }
+        api.getReport().gameFinished();
+        games++;
+    }
+
+    //the cells of the next game, in order
+    private List<Integer> cells()
+    {
+        List<Integer> cells = new ArrayList<>(9);
+        if (scripted)
+        {
+            for (int cell : SCRIPTS[games % SCRIPTS.length])
+            {
+                cells.add(cell);
+            }
+            return cells;
+        }
+
+        for (int cell = 0; cell < 9; cell++)
+        {
+            cells.add(cell);
+        }
+        Collections.shuffle(cells, random);
+        return cells;
+    }
+}
@@ -2,6 +2,10 @@ package com.example.tictactoerest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.task.TaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * Entry point to the Web API application.
@@ -10,6 +14,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @version 1.0
  */
 @SpringBootApplication
+@EnableScheduling
 public class TicTacToeRestApplication
 {
     /**
@@ -21,4 +26,17 @@ public class TicTacToeRestApplication
         SpringApplication.run(TicTacToeRestApplication.class, args);
     }
 
+    /**
+     * Creates the scheduler for @Scheduled jobs. @EnableWebSocket registers
+     * its own (empty) scheduler, which stops Spring Boot from creating one.
+     *
+     * @param builder the scheduler settings from spring.task.scheduling.*
+     * @return a scheduler for @Scheduled jobs
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(TaskSchedulerBuilder builder)
+    {
+        return builder.build();
+    }
+
 }
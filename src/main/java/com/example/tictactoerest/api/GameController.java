@@ -1,5 +1,6 @@
 package com.example.tictactoerest.api;
 
+import com.example.tictactoerest.commands.BatchMove;
 import com.example.tictactoerest.commands.GameMove;
 import com.example.tictactoerest.commands.MatchUp;
 import com.example.tictactoerest.entities.Game;
@@ -8,11 +9,32 @@ import com.example.tictactoerest.exceptions.IllegalMoveException;
 import com.example.tictactoerest.exceptions.MissingGameException;
 import com.example.tictactoerest.exceptions.MissingPlayerException;
 import com.example.tictactoerest.service.GameService;
+import com.example.tictactoerest.service.MoveNotifier;
+import com.example.tictactoerest.views.BatchResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * API endpoint for games. Games can be created,
@@ -25,19 +47,59 @@ import java.util.List;
  */
 @RestController
 @RequestMapping("api/v1/game") //our endpoint
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)
 public class GameController
 {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final int MAX_WAIT_SECONDS = 60;
+
+    private static final byte[] NEWLINE = {'\n'};
+
     private GameService service;
+    private ObjectMapper mapper;
+    private MoveNotifier notifier;
+
+    //streams outlive spring.mvc.async.request-timeout, so they get their own timeout and threads;
+    //each running stream holds a database connection, so the threads and waiting streams are bounded
+    private long streamTimeoutMs;
+    private final ExecutorService streams;
 
     /**
      * Inject the service for interacting with Game objects.
      *
      * @param service the service layer for Game objects
+     * @param mapper writes streamed games as JSON
+     * @param notifier waits for moves in long-polling requests
+     * @param streamTimeoutMs the longest a stream of all games may run
+     * @param streamThreads the number of streams of all games written at once
+     * @param streamQueue the number of streams that may wait for a thread
      */
-    public GameController(GameService service)
+    public GameController(GameService service, ObjectMapper mapper, MoveNotifier notifier,
+                          @Value("${tictactoe.stream.timeout-ms:3600000}") long streamTimeoutMs,
+                          @Value("${tictactoe.stream.threads:4}") int streamThreads,
+                          @Value("${tictactoe.stream.queue:16}") int streamQueue)
     {
         this.service = service;
+        this.mapper = mapper;
+        this.notifier = notifier;
+        this.streamTimeoutMs = streamTimeoutMs;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "game-stream-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        streams = new ThreadPoolExecutor(streamThreads, streamThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(streamQueue), factory);
+    }
+
+    /**
+     * Stops the threads writing streams.
+     */
+    @PreDestroy
+    public void close()
+    {
+        streams.shutdownNow();
     }
 
     //CREATE **********************************************
@@ -70,32 +132,157 @@ public class GameController
         }
     }
 
+    /**
+     * Adds a batch of new Game objects to the api.
+     *
+     * @param matchUps the ids of the players in each game
+     * @return a result for each game with status code 200 (OK). Each result
+     *         has the status code POST api/v1/game would have returned.
+     */
+    @PostMapping("batch")
+    public ResponseEntity<List<BatchResult>> newGames(@RequestBody List<MatchUp> matchUps)
+    {
+        return new ResponseEntity<>(service.newGames(matchUps), HttpStatus.OK);
+    }
+
     //READ ************************************************
     //*****************************************************
 
     /**
-     * Returns all Game objects created so far.
-     * @return a list of all Game objects with status code 200 (OK).
+     * Returns all Game objects created so far. If a limit or cursor is
+     * given, returns a single page of games in id order instead.
+     *
+     * @param limit the maximum number of games in the page
+     * @param after the cursor returned with the previous page
+     * @return a list of all Game objects, or a page of Game objects
+     *         with the next cursor, with status code 200 (OK).
      */
-    @GetMapping
-    public ResponseEntity<List<Game>> games()
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Object> games(@RequestParam(required = false) Integer limit,
+                                        @RequestParam(required = false) Integer after)
     {
-        return new ResponseEntity<>(service.games(), HttpStatus.OK);
+        if (limit == null && after == null)
+        {
+            return new ResponseEntity<>(service.games(), HttpStatus.OK);
+        }
+
+        int pageSize = limit == null ? GameService.MAX_PAGE_SIZE : limit;
+        return new ResponseEntity<>(service.games(after == null ? 0 : after, pageSize), HttpStatus.OK);
     }
 
     /**
-     * Returns a Game object given the id of the game.
+     * Returns a page of games, in id order, with a token on a cell. For
+     * example, row=1, col=1 and token=x finds the games where X took the
+     * center.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param token "x" or "o"
+     * @param limit the maximum number of games in the page
+     * @param after the cursor returned with the previous page
+     * @return a page of Game objects with the next cursor and status code 200 (OK),
+     *         status code 400 (BAD REQUEST) if the cell or token is not valid
+     */
+    @GetMapping("search")
+    public ResponseEntity<Object> search(@RequestParam int row,
+                                         @RequestParam int col,
+                                         @RequestParam String token,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) Integer after)
+    {
+        if (!token.equalsIgnoreCase("x") && !token.equalsIgnoreCase("o"))
+        {
+            return new ResponseEntity<>(String.format("Unknown token %s", token), HttpStatus.BAD_REQUEST);
+        }
+
+        try
+        {
+            return new ResponseEntity<>(service.gamesWithToken(token.equalsIgnoreCase("x"), row, col,
+                    after == null ? 0 : after,
+                    limit == null ? GameService.MAX_PAGE_SIZE : limit), HttpStatus.OK);
+        }
+        catch (IllegalMoveException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Streams all Game objects created so far as newline-delimited JSON,
+     * one game per line. Games are written as they are read from the
+     * database, for up to tictactoe.stream.timeout-ms.
+     *
+     * @return a stream of Game objects with status code 200 (OK),
+     *         or status code 503 (SERVICE UNAVAILABLE) if too many streams are running
+     */
+    @GetMapping(produces = NDJSON)
+    public ResponseEntity<ResponseBodyEmitter> streamGames()
+    {
+        ResponseBodyEmitter body = new ResponseBodyEmitter(streamTimeoutMs);
+        try
+        {
+            streams.execute(() -> write(body));
+        }
+        catch (RejectedExecutionException ex)
+        {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    //writes every game to a stream, on a stream thread
+    private void write(ResponseBodyEmitter body)
+    {
+        try
+        {
+            service.streamGames(game -> {
+                try
+                {
+                    body.send(mapper.writeValueAsBytes(game));
+                    body.send(NEWLINE);
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            body.complete();
+        }
+        catch (RuntimeException ex)
+        {
+            //a closed connection or a timed out stream ends the read too
+            body.completeWithError(ex);
+        }
+    }
+
+    /**
+     * Returns a Game object given the id of the game. The response has
+     * a weak ETag made from the turn counter of the game, and a request
+     * with a matching If-None-Match header is answered without loading
+     * the game. The ETag is weak because the stats of the players can
+     * change without a move in this game.
      *
      * @param gameId the game id
-     * @return the Game object with status code 200 (OK), or if the Game
-     *         does not exist status code 404 (NOT FOUND)
+     * @param ifNoneMatch the ETag of the last response, if any
+     * @return the Game object with status code 200 (OK),
+     *         status code 304 (NOT MODIFIED) if no move was made since the ETag,
+     *         or if the Game does not exist status code 404 (NOT FOUND)
      */
     @GetMapping("{gameId}")
-    public ResponseEntity<Object> getById(@PathVariable int gameId)
+    public ResponseEntity<Object> getById(@PathVariable int gameId,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
     {
         try
         {
-            return new ResponseEntity<>(service.getGameById(gameId), HttpStatus.OK);
+            if (ifNoneMatch != null)
+            {
+                int turn = service.getTurn(gameId);
+                if (matches(ifNoneMatch, turn))
+                {
+                    return notModified(turn);
+                }
+            }
+            return current(gameId);
         }
         catch (MissingGameException ex)
         {
@@ -103,26 +290,136 @@ public class GameController
         }
     }
 
-    //UPDATE **********************************************
-    //*****************************************************
+    /**
+     * Long-polling version of GET api/v1/game/{gameId}. If the If-None-Match
+     * header matches the game, waits until the next move is made (up to the
+     * input number of seconds) before answering.
+     *
+     * @param gameId the game id
+     * @param wait the maximum number of seconds to wait, from 1 to MAX_WAIT_SECONDS
+     * @param ifNoneMatch the ETag of the last response, if any
+     * @return the Game object with status code 200 (OK) once it changes,
+     *         status code 304 (NOT MODIFIED) if no move was made before the wait ended,
+     *         or if the Game does not exist status code 404 (NOT FOUND)
+     */
+    @GetMapping(value = "{gameId}", params = "wait")
+    public DeferredResult<ResponseEntity<Object>> awaitMove(@PathVariable int gameId,
+                                                            @RequestParam int wait,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+    {
+        //a timeout of 0 would mean no timeout at all
+        long timeout = Math.min(Math.max(wait, 1), MAX_WAIT_SECONDS) * 1000L;
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(timeout);
+        try
+        {
+            int turn = service.getTurn(gameId);
+            if (ifNoneMatch == null || !matches(ifNoneMatch, turn))
+            {
+                result.setResult(current(gameId));
+                return result;
+            }
+
+            //the future completes on the thread that made the move, so the response is built there
+            CompletableFuture<Integer> moved = notifier.awaitTurnAfter(gameId, turn);
+            result.onTimeout(() -> {
+                moved.cancel(false);
+                result.setResult(notModified(turn));
+            });
+            result.onError(ex -> moved.cancel(false));
+            moved.thenRun(() -> {
+                try
+                {
+                    result.setResult(current(gameId));
+                }
+                catch (MissingGameException ex)
+                {
+                    result.setResult(new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND));
+                }
+            });
+        }
+        catch (MissingGameException ex)
+        {
+            result.setResult(new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND));
+        }
+        return result;
+    }
+
+    //returns the game with an ETag that matches its turn
+    private ResponseEntity<Object> current(int gameId)
+    {
+        Game game = service.getGameById(gameId);
+        return ResponseEntity.ok().eTag(eTag(game.getTurn())).body(game);
+    }
+
+    private static ResponseEntity<Object> notModified(int turn)
+    {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag(turn)).build();
+    }
+
+    private static String eTag(int turn)
+    {
+        return "W/\"" + turn + "\"";
+    }
+
+    //true if the If-None-Match header lists the ETag of the turn (weak comparison) or is *
+    private static boolean matches(String ifNoneMatch, int turn)
+    {
+        String quoted = "\"" + turn + "\"";
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(quoted) || tag.equals("W/" + quoted))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
-     * Updates a Game object given a player move.
+     * Returns the best move for the player whose turn it is, and
+     * the result of the game if both players play perfectly.
      *
-     * @param gameId the id of the game
-     * @param move a player move in the game
-     * @return status code 200 (OK) if successful,
-     *         status code 404 (NOT FOUND) if a player or game is not found
-     *         status code 400 (BAD REQUEST) if the move is illegal
+     * @param gameId the game id
+     * @return the evaluation with status code 200 (OK),
+     *         status code 404 (NOT FOUND) if the game does not exist
+     *         status code 400 (BAD REQUEST) if the game is finished
      */
-    @PutMapping("{gameId}")
-    public ResponseEntity<Object> move(@PathVariable int gameId, @RequestBody GameMove move)
+    @GetMapping("{gameId}/evaluation")
+    public ResponseEntity<Object> evaluate(@PathVariable int gameId)
     {
         try
         {
-            return new ResponseEntity<>(service.move(gameId, move), HttpStatus.OK);
+            return new ResponseEntity<>(service.evaluate(gameId), HttpStatus.OK);
         }
-        catch (MissingGameException | MissingPlayerException ex)
+        catch (MissingGameException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        catch (GameStateException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Rebuilds a game from the move log, as it was after the input
+     * number of moves.
+     *
+     * @param gameId the game id
+     * @param ply the number of moves to replay, every logged move if not given
+     * @return the board after the moves and the moves with status code 200 (OK),
+     *         status code 404 (NOT FOUND) if the game does not exist
+     *         status code 400 (BAD REQUEST) if fewer moves are logged
+     */
+    @GetMapping("{gameId}/replay")
+    public ResponseEntity<Object> replay(@PathVariable int gameId, @RequestParam(required = false) Integer ply)
+    {
+        try
+        {
+            return new ResponseEntity<>(service.replay(gameId, ply), HttpStatus.OK);
+        }
+        catch (MissingGameException ex)
         {
             return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
         }
@@ -132,6 +429,61 @@ public class GameController
         }
     }
 
+    //UPDATE **********************************************
+    //*****************************************************
+
+    /**
+     * Updates a Game object given a player move. The move is made on the
+     * actor of the game when tictactoe.actors.enabled=true, so the request
+     * thread is released while it waits.
+     *
+     * @param gameId the id of the game
+     * @param move a player move in the game
+     * @return status code 200 (OK) if successful,
+     *         status code 404 (NOT FOUND) if a player or game is not found
+     *         status code 400 (BAD REQUEST) if the move is illegal
+     *         status code 409 (CONFLICT) if the game was changed by another server
+     */
+    @PutMapping("{gameId}")
+    public CompletableFuture<ResponseEntity<Object>> move(@PathVariable int gameId, @RequestBody GameMove move)
+    {
+        return service.moveAsync(gameId, move).handle((game, ex) -> {
+            if (ex == null)
+            {
+                return new ResponseEntity<>(game, HttpStatus.OK);
+            }
+
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (cause instanceof MissingGameException || cause instanceof MissingPlayerException)
+            {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.NOT_FOUND);
+            }
+            else if (cause instanceof IllegalMoveException)
+            {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            else if (cause instanceof OptimisticLockingFailureException)
+            {
+                return new ResponseEntity<>(String.format("Game with id %s was changed, try again", gameId),
+                        HttpStatus.CONFLICT);
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Makes a batch of moves, in order, in one or more games.
+     *
+     * @param moves the moves, each with the id of its game
+     * @return a result for each move with status code 200 (OK). Each result
+     *         has the status code PUT api/v1/game/{gameId} would have returned.
+     */
+    @PutMapping("batch")
+    public ResponseEntity<List<BatchResult>> moves(@RequestBody List<BatchMove> moves)
+    {
+        return new ResponseEntity<>(service.moves(moves), HttpStatus.OK);
+    }
+
     //DELETE **********************************************
     //*****************************************************
 
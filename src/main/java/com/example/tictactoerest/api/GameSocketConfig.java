@@ -0,0 +1,35 @@
+package com.example.tictactoerest.api;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the WebSocket endpoint for playing games.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Configuration
+@EnableWebSocket
+public class GameSocketConfig implements WebSocketConfigurer
+{
+    private GameSocketHandler handler;
+
+    /**
+     * Inject the handler for game sessions.
+     *
+     * @param handler the WebSocket handler for games
+     */
+    public GameSocketConfig(GameSocketHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry)
+    {
+        registry.addHandler(handler, "ws/v1/game/*").setAllowedOrigins("*");
+    }
+}
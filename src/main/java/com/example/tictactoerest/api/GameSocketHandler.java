@@ -0,0 +1,361 @@
+package com.example.tictactoerest.api;
+
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.exceptions.MissingGameException;
+import com.example.tictactoerest.service.GameService;
+import com.example.tictactoerest.views.BatchResult;
+import com.example.tictactoerest.views.MoveDelta;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket endpoint for playing a game. Connect to
+ * ws/v1/game/{gameId}?playerId={playerId} (leave out the player id to
+ * watch a game without playing). All frames are single lines of text:
+ *
+ * - sent on connect:     "= turn cells" where cells is the board in
+ *                        row-major order with '-' for empty cells
+ * - sent by the player:  "row col" to make a move
+ * - pushed on each move: "turn row col token" followed by " win" or
+ *                        " draw" if the move ended the game
+ * - sent on errors:      "! status message" with the status code the
+ *                        REST endpoint would have returned
+ *
+ * Moves are made with GameService.move(), so they are checked the same
+ * way as PUT api/v1/game/{gameId}. A move that arrives before the board
+ * can be ignored if its turn is not greater than the board's turn.
+ *
+ * Frames are queued on an outbox per session and sent by a small pool,
+ * so a move never waits for a slow connection while it holds the game
+ * lock. Frames for a session are sent in the order they were queued.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class GameSocketHandler extends TextWebSocketHandler
+{
+    private static final String GAME_ID = "gameId";
+    private static final String PLAYER_ID = "playerId";
+    private static final String OUTBOUND = "outbound";
+
+    //a player that stops reading is disconnected instead of holding up other players
+    private static final long SEND_TIME_LIMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5000);
+    private static final int QUEUED_FRAMES_LIMIT = 1000;
+
+    //queued to close a session once the frames before it are sent (compared by identity)
+    private static final String CLOSE = new String();
+
+    private GameService service;
+
+    //sends the queued frames of every session
+    private final ExecutorService senders;
+
+    //connected sessions by game id
+    private final ConcurrentMap<Integer, Set<Outbox>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Inject the service for making moves.
+     *
+     * @param service the service layer for Game objects
+     */
+    public GameSocketHandler(GameService service)
+    {
+        this.service = service;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "game-socket-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        senders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, factory);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception
+    {
+        UriComponents uri = UriComponentsBuilder.fromUri(session.getUri()).build();
+        List<String> path = uri.getPathSegments();
+        MultiValueMap<String, String> query = uri.getQueryParams();
+        int gameId;
+        try
+        {
+            gameId = Integer.parseInt(path.get(path.size() - 1));
+            if (query.containsKey(PLAYER_ID))
+            {
+                session.getAttributes().put(PLAYER_ID, Integer.parseInt(query.getFirst(PLAYER_ID)));
+            }
+        }
+        catch (NumberFormatException ex)
+        {
+            session.close(CloseStatus.BAD_DATA.withReason("Expected ws/v1/game/{gameId}?playerId={playerId}"));
+            return;
+        }
+
+        //pushed moves and replies are queued from different threads at the same time
+        Outbox outbound = new Outbox(session);
+        session.getAttributes().put(GAME_ID, gameId);
+        session.getAttributes().put(OUTBOUND, outbound);
+
+        //listen before reading the board, so no move is missed
+        //added inside compute(), so a closing session cannot drop the set in between
+        sessions.compute(gameId, (id, connected) -> {
+            connected = connected == null ? ConcurrentHashMap.newKeySet() : connected;
+            connected.add(outbound);
+            return connected;
+        });
+        try
+        {
+            outbound.offer(boardFrame(service.getGameById(gameId)));
+        }
+        catch (MissingGameException ex)
+        {
+            outbound.offer(errorFrame(HttpStatus.NOT_FOUND.value(), ex.getMessage()));
+            outbound.closeWhenSent();
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception
+    {
+        Outbox outbound = (Outbox) session.getAttributes().get(OUTBOUND);
+        Integer playerId = (Integer) session.getAttributes().get(PLAYER_ID);
+        if (playerId == null)
+        {
+            outbound.offer(errorFrame(HttpStatus.FORBIDDEN.value(), "Connect with a playerId to make moves"));
+            return;
+        }
+
+        String[] fields = message.getPayload().trim().split("\\s+");
+        GameMove move;
+        try
+        {
+            if (fields.length != 2)
+            {
+                throw new NumberFormatException();
+            }
+            move = new GameMove(playerId, Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+        }
+        catch (NumberFormatException ex)
+        {
+            outbound.offer(errorFrame(HttpStatus.BAD_REQUEST.value(), "Expected \"row col\""));
+            return;
+        }
+
+        try
+        {
+            //the move itself is pushed to every session of the game, including this one
+            service.move((Integer) session.getAttributes().get(GAME_ID), move);
+        }
+        catch (RuntimeException ex)
+        {
+            BatchResult result = BatchResult.failure(ex);
+            outbound.offer(errorFrame(result.getStatus(), result.getError()));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status)
+    {
+        Integer gameId = (Integer) session.getAttributes().get(GAME_ID);
+        if (gameId != null)
+        {
+            sessions.computeIfPresent(gameId, (id, connected) -> {
+                connected.remove(session.getAttributes().get(OUTBOUND));
+                return connected.isEmpty() ? null : connected;
+            });
+        }
+    }
+
+    /**
+     * Pushes a move to every session connected to its game. Moves are
+     * published under the game lock, so this only queues the frame, in
+     * the order the moves were made.
+     *
+     * @param delta the move that was made
+     */
+    @EventListener
+    public void onMove(MoveDelta delta)
+    {
+        Set<Outbox> connected = sessions.get(delta.getGameId());
+        if (connected == null)
+        {
+            return;
+        }
+
+        String frame = moveFrame(delta);
+        for (Outbox outbox : connected)
+        {
+            outbox.offer(frame);
+        }
+    }
+
+    /**
+     * Stops the senders. Frames still queued are dropped, as the
+     * sessions are closing.
+     */
+    @PreDestroy
+    public void close()
+    {
+        senders.shutdownNow();
+    }
+
+    private static void close(WebSocketSession session, CloseStatus status)
+    {
+        //closing the session unregisters it in afterConnectionClosed()
+        try
+        {
+            session.close(status);
+        }
+        catch (IOException ignored)
+        {
+            //already closed
+        }
+    }
+
+    private static String boardFrame(Game game)
+    {
+        return "= " + game.getTurn() + " " + new String(game.getGameState()).replace(' ', '-');
+    }
+
+    private static String moveFrame(MoveDelta delta)
+    {
+        String frame = delta.getTurn() + " " + delta.getRow() + " " + delta.getCol() + " " + delta.getToken();
+        //a last move that fills the board and completes a line sets both flags, and is recorded as a draw
+        if (delta.isDraw())
+        {
+            return frame + " draw";
+        }
+        else if (delta.isGameOver())
+        {
+            return frame + " win";
+        }
+        return frame;
+    }
+
+    private static String errorFrame(int status, String message)
+    {
+        return "! " + status + " " + message;
+    }
+
+    //the frames queued for one session, drained by one sender at a time
+    private final class Outbox implements Runnable
+    {
+        private final WebSocketSession session;
+        private final Queue<String> frames = new ConcurrentLinkedQueue<>();
+
+        //frames counted but not yet sent
+        private final AtomicInteger pending = new AtomicInteger();
+
+        //System.nanoTime() when the frame being sent was started, or 0 between frames
+        private volatile long sendStarted;
+
+        //true once the session is too far behind, so later frames are not queued
+        private volatile boolean dropped;
+
+        private Outbox(WebSocketSession session)
+        {
+            this.session = session;
+        }
+
+        //queues a frame, and starts a sender if none is running
+        private void offer(String frame)
+        {
+            if (dropped)
+            {
+                return;
+            }
+
+            long started = sendStarted;
+            if (pending.get() >= QUEUED_FRAMES_LIMIT ||
+                (started != 0 && System.nanoTime() - started > SEND_TIME_LIMIT_NANOS))
+            {
+                //closing can block on the same connection, so it is left to a sender too
+                dropped = true;
+                senders.execute(() -> close(session, CloseStatus.SESSION_NOT_RELIABLE));
+                return;
+            }
+
+            //counted before it is added, so the queue only ever holds counted frames
+            int count = pending.getAndIncrement();
+            frames.add(frame);
+            if (count == 0)
+            {
+                senders.execute(this);
+            }
+        }
+
+        //closes the session once the frames queued so far are sent
+        private void closeWhenSent()
+        {
+            offer(CLOSE);
+        }
+
+        //sends until every counted frame is sent
+        @Override
+        public void run()
+        {
+            do
+            {
+                String frame;
+                while ((frame = frames.poll()) == null)
+                {
+                    //counted but not added yet
+                    Thread.onSpinWait();
+                }
+                send(frame);
+            }
+            while (pending.decrementAndGet() > 0);
+        }
+
+        private void send(String frame)
+        {
+            if (!session.isOpen())
+            {
+                return;
+            }
+            else if (frame == CLOSE)
+            {
+                close(session, CloseStatus.NORMAL);
+                return;
+            }
+
+            sendStarted = System.nanoTime();
+            try
+            {
+                session.sendMessage(new TextMessage(frame));
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                close(session, CloseStatus.SESSION_NOT_RELIABLE);
+            }
+            finally
+            {
+                sendStarted = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.tictactoerest.api;
+
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.LeaderboardService;
+import com.example.tictactoerest.views.Standing;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * API endpoint for the leaderboard. Players are ranked by wins.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("api/v1/leaderboard") //our endpoint
+@CrossOrigin(origins = "*")
+public class LeaderboardController
+{
+    public static final int DEFAULT_LIMIT = 10;
+
+    private LeaderboardService service;
+
+    /**
+     * Inject the service that ranks players.
+     *
+     * @param service the leaderboard service layer
+     */
+    public LeaderboardController(LeaderboardService service)
+    {
+        this.service = service;
+    }
+
+    /**
+     * Returns the players with the most wins.
+     *
+     * @param limit the number of players to return
+     * @return a list of standings, best first, with status code 200 (OK)
+     */
+    @GetMapping
+    public ResponseEntity<List<Standing>> top(@RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit)
+    {
+        return new ResponseEntity<>(service.top(limit), HttpStatus.OK);
+    }
+
+    /**
+     * Returns the rank of a player.
+     *
+     * @param playerId the id of the player
+     * @return the standing of the player with status code 200 (OK),
+     *         otherwise 404 (NOT FOUND) if no player found
+     */
+    @GetMapping("{playerId}")
+    public ResponseEntity<Object> standing(@PathVariable int playerId)
+    {
+        try
+        {
+            return new ResponseEntity<>(service.standing(playerId), HttpStatus.OK);
+        }
+        catch (MissingPlayerException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Leaderboard controller: ranking " + service.size() + " players";
+    }
+}
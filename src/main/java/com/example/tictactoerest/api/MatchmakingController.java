@@ -0,0 +1,150 @@
+package com.example.tictactoerest.api;
+
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.MatchmakingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * API endpoint for matchmaking. Players ask for a game and are told
+ * about their match when another player is found.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("api/v1/matchmaking") //our endpoint
+@CrossOrigin(origins = "*")
+public class MatchmakingController
+{
+    public static final int DEFAULT_WAIT_SECONDS = 30;
+
+    private MatchmakingService service;
+
+    /**
+     * Inject the service that pairs players.
+     *
+     * @param service the matchmaking service layer
+     */
+    public MatchmakingController(MatchmakingService service)
+    {
+        this.service = service;
+    }
+
+    //CREATE **********************************************
+    //*****************************************************
+
+    /**
+     * Queues a player for a game and waits for a match (up to the input
+     * number of seconds). The player stays queued while a request is
+     * waiting, so a client that gets 204 can ask again.
+     *
+     * @param playerId the id of the player
+     * @param wait the maximum number of seconds to wait, from 1 to GameController.MAX_WAIT_SECONDS
+     * @return the new Game object with status code 201 (CREATED) once matched,
+     *         status code 204 (NO CONTENT) if no match was found before the wait ended,
+     *         status code 404 (NOT FOUND) if the player doesn't exist
+     *         status code 400 (BAD REQUEST) if the player is in another game
+     *         status code 410 (GONE) if the player left the queue
+     */
+    @PostMapping("{playerId}")
+    public DeferredResult<ResponseEntity<Object>> enqueue(@PathVariable int playerId,
+                                                          @RequestParam(defaultValue = "" + DEFAULT_WAIT_SECONDS) int wait)
+    {
+        long waitMs = Math.min(Math.max(wait, 1), GameController.MAX_WAIT_SECONDS) * 1000L;
+
+        //the matchmaker ends the wait, this timeout only covers a stalled pairing pass
+        DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(waitMs + 5000);
+        result.onTimeout(() -> result.setResult(new ResponseEntity<>(HttpStatus.NO_CONTENT)));
+        try
+        {
+            //the future completes on the pairing thread, so the response is built there
+            CompletableFuture<Game> match = service.enqueue(playerId, waitMs);
+            match.whenComplete((game, ex) -> result.setResult(matched(game, ex)));
+        }
+        catch (MissingPlayerException ex)
+        {
+            result.setResult(new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND));
+        }
+        catch (GameStateException ex)
+        {
+            result.setResult(new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST));
+        }
+        return result;
+    }
+
+    private static ResponseEntity<Object> matched(Game game, Throwable ex)
+    {
+        if (ex == null)
+        {
+            return new ResponseEntity<>(game, HttpStatus.CREATED);
+        }
+
+        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+        if (cause instanceof MissingPlayerException)
+        {
+            return new ResponseEntity<>(cause.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        else if (cause instanceof GameStateException)
+        {
+            return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        else if (cause instanceof TimeoutException)
+        {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        else if (cause instanceof CancellationException)
+        {
+            //the player left the queue
+            return new ResponseEntity<>(HttpStatus.GONE);
+        }
+        else
+        {
+            return new ResponseEntity<>(cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    //DELETE **********************************************
+    //*****************************************************
+
+    /**
+     * Removes a player from the matchmaking queue.
+     *
+     * @param playerId the id of the player
+     * @return status code 200 (OK),
+     *         status code 404 (NOT FOUND) if the player is not queued
+     *         status code 400 (BAD REQUEST) if the player is being matched
+     */
+    @DeleteMapping("{playerId}")
+    public ResponseEntity<Object> leave(@PathVariable int playerId)
+    {
+        try
+        {
+            service.leave(playerId);
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+        catch (MissingPlayerException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        catch (GameStateException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Matchmaking controller: " + service.size() + " players queued";
+    }
+}
@@ -1,14 +1,19 @@
 package com.example.tictactoerest.api;
 
+import com.example.tictactoerest.entities.GameStatus;
 import com.example.tictactoerest.entities.Player;
 import com.example.tictactoerest.exceptions.GameStateException;
 import com.example.tictactoerest.exceptions.InvalidNameException;
 import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.GameService;
 import com.example.tictactoerest.service.PlayerService;
+import com.example.tictactoerest.views.ImportSummary;
+import com.example.tictactoerest.views.PlayerName;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -25,6 +30,8 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class PlayerController
 {
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+
     private PlayerService service;
 
     /**
@@ -60,6 +67,35 @@ public class PlayerController
         }
     }
 
+    /**
+     * Saves players streamed as newline-delimited JSON, one player per line.
+     * Rows with a name that is already in use are skipped.
+     *
+     * @param body the players, e.g. {"name":"sam","wins":3,"losses":1,"draws":0}
+     * @return the number of players imported, duplicates and invalid rows
+     *         with status code 200 (OK)
+     */
+    @PostMapping(value = "import", consumes = GameController.NDJSON)
+    public ResponseEntity<ImportSummary> importJson(InputStream body)
+    {
+        return new ResponseEntity<>(service.importJson(body), HttpStatus.OK);
+    }
+
+    /**
+     * Saves players streamed as CSV rows of name[,wins,losses,draws],
+     * with an optional header. Rows with a name that is already in use
+     * are skipped.
+     *
+     * @param body the players
+     * @return the number of players imported, duplicates and invalid rows
+     *         with status code 200 (OK)
+     */
+    @PostMapping(value = "import", consumes = "text/csv")
+    public ResponseEntity<ImportSummary> importCsv(InputStream body)
+    {
+        return new ResponseEntity<>(service.importCsv(body), HttpStatus.OK);
+    }
+
     //READ ************************************************
     //*****************************************************
 
@@ -73,6 +109,22 @@ public class PlayerController
         return new ResponseEntity<>(service.players(), HttpStatus.OK);
     }
 
+    /**
+     * Returns the players whose names start with the input prefix,
+     * ignoring case.
+     *
+     * @param prefix the start of the name
+     * @param limit the maximum number of players to return
+     * @return a list of player ids and names, in name order,
+     *         with status code 200 (OK)
+     */
+    @GetMapping("search")
+    public ResponseEntity<List<PlayerName>> search(@RequestParam String prefix,
+                                                   @RequestParam(defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit)
+    {
+        return new ResponseEntity<>(service.search(prefix, limit), HttpStatus.OK);
+    }
+
     /**
      * Returns a player with the input id.
      *
@@ -94,19 +146,50 @@ public class PlayerController
     }
 
     /**
-     * Returns a list of games that a player was involved in.
+     * Returns a list of games that a player was involved in. If a limit,
+     * cursor or status is given, returns a single page of games, newest
+     * first, instead.
      *
      * @param playerId the id of the player whose game history we are retrieving
-     * @return a list of Game objects and status code 200 (OK) if the player is found,
-     *         otherwise status code 404 (NOT FOUND)
+     * @param limit the maximum number of games in the page
+     * @param before the cursor returned with the previous page
+     * @param status "active" or "finished" to only return those games
+     * @return a list of Game objects, or a page of Game objects with the next
+     *         cursor, and status code 200 (OK) if the player is found,
+     *         status code 404 (NOT FOUND) if the player is not found
+     *         status code 400 (BAD REQUEST) if the status is not recognized
      */
     @GetMapping("{playerId}/history")
-    public ResponseEntity<Object> gamesPlayed(@PathVariable int playerId)
+    public ResponseEntity<Object> gamesPlayed(@PathVariable int playerId,
+                                              @RequestParam(required = false) Integer limit,
+                                              @RequestParam(required = false) Integer before,
+                                              @RequestParam(required = false) String status)
     {
+        GameStatus gameStatus = null;
+        if (status != null)
+        {
+            try
+            {
+                gameStatus = GameStatus.valueOf(status.toUpperCase());
+            }
+            catch (IllegalArgumentException ex)
+            {
+                return new ResponseEntity<>(String.format("Unknown game status %s", status), HttpStatus.BAD_REQUEST);
+            }
+        }
+
         try
         {
             Player player = service.playerById(playerId);
-            return new ResponseEntity<>(service.getGamesPlayed(player), HttpStatus.OK);
+            if (limit == null && before == null && status == null)
+            {
+                return new ResponseEntity<>(service.getGamesPlayed(player), HttpStatus.OK);
+            }
+
+            return new ResponseEntity<>(service.getGamesPlayed(player,
+                    before == null ? Integer.MAX_VALUE : before,
+                    limit == null ? GameService.MAX_PAGE_SIZE : limit,
+                    gameStatus), HttpStatus.OK);
         }
         catch (MissingPlayerException ex)
         {
@@ -122,8 +205,10 @@ public class PlayerController
      *
      * @param updatedPlayer the updated player object
      * @return an updated Player and status code 200 (OK),
-     *         otherwise status code 404 (NOT FOUND) if the player
+     *         status code 404 (NOT FOUND) if the player
      *         does not exist already in the api
+     *         status code 400 (BAD REQUEST) if the name is missing,
+     *         blank or already in use
      */
     @PutMapping
     public ResponseEntity<Object> update(Player updatedPlayer)
@@ -136,6 +221,10 @@ public class PlayerController
         {
             return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
         }
+        catch (GameStateException | InvalidNameException ex)
+        {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
     }
 
     //DELETE **********************************************
@@ -0,0 +1,33 @@
+package com.example.tictactoerest.commands;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a single move on a tictactoe board in a batch
+ * of moves for different games.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchMove
+{
+    private int gameId;
+    private int playerId;
+    private int row;
+    private int col;
+
+    /**
+     * Returns the move without the game id.
+     *
+     * @return a move for GameService.move()
+     */
+    public GameMove toGameMove()
+    {
+        return new GameMove(playerId, row, col);
+    }
+}
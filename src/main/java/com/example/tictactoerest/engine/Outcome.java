@@ -0,0 +1,15 @@
+package com.example.tictactoerest.engine;
+
+/**
+ * The result of a tictactoe position under perfect play,
+ * from the point of view of the player to move.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public enum Outcome
+{
+    LOSS,
+    DRAW,
+    WIN
+}
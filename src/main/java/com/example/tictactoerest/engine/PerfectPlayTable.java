@@ -0,0 +1,163 @@
+package com.example.tictactoerest.engine;
+
+import com.example.tictactoerest.entities.BitBoard;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * A table with the best move and game result for every position that
+ * can be reached in a game of tictactoe. The table is solved once on
+ * startup and indexed by the base-3 encoding of the board, so lookups
+ * do not search.
+ *
+ * Positions are solved with the same rules as Game.move(): X moves
+ * first, a full board is a draw, and otherwise a completed line wins.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class PerfectPlayTable
+{
+    public static final int POSITIONS = 19683; //3^9
+
+    private static final byte UNSOLVED = -1;
+    private static final int CELL_BITS = 4;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int[] POWERS_OF_THREE = new int[BitBoard.CELLS];
+
+    static
+    {
+        POWERS_OF_THREE[0] = 1;
+        for (int i = 1; i < BitBoard.CELLS; i++)
+        {
+            POWERS_OF_THREE[i] = POWERS_OF_THREE[i - 1] * 3;
+        }
+    }
+
+    //(outcome << CELL_BITS) | best cell, or UNSOLVED for finished or unreachable positions
+    private final byte[] table = new byte[POSITIONS];
+
+    /**
+     * Solves every position reachable from the empty board.
+     */
+    public PerfectPlayTable()
+    {
+        Arrays.fill(table, UNSOLVED);
+        solve(0, 0);
+    }
+
+    /**
+     * Returns the base-3 encoding of a board, where each cell
+     * is 0 (empty), 1 (x) or 2 (o).
+     *
+     * @param xMask the tokens of player X
+     * @param oMask the tokens of player O
+     * @return a number between 0 and 3^9 - 1
+     */
+    public static int index(int xMask, int oMask)
+    {
+        int index = 0;
+        for (int i = 0; i < BitBoard.CELLS; i++)
+        {
+            if ((xMask & (1 << i)) != 0)
+            {
+                index += POWERS_OF_THREE[i];
+            }
+            else if ((oMask & (1 << i)) != 0)
+            {
+                index += 2 * POWERS_OF_THREE[i];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns true if the position can be reached in a game and is not finished.
+     *
+     * @param xMask the tokens of player X
+     * @param oMask the tokens of player O
+     * @return true if the position has a best move, otherwise false
+     */
+    public boolean isSolved(int xMask, int oMask)
+    {
+        return table[index(xMask, oMask)] != UNSOLVED;
+    }
+
+    /**
+     * Returns the cell (row * 3 + col) of the best move for the player to move.
+     *
+     * @param xMask the tokens of player X
+     * @param oMask the tokens of player O
+     * @return the best cell, or -1 if the position is finished or unreachable
+     */
+    public int bestCell(int xMask, int oMask)
+    {
+        byte entry = table[index(xMask, oMask)];
+        return entry == UNSOLVED ? -1 : entry & CELL_MASK;
+    }
+
+    /**
+     * Returns the result of the game for the player to move, if both
+     * players play perfectly from this position.
+     *
+     * @param xMask the tokens of player X
+     * @param oMask the tokens of player O
+     * @return the outcome, or null if the position is finished or unreachable
+     */
+    public Outcome outcome(int xMask, int oMask)
+    {
+        byte entry = table[index(xMask, oMask)];
+        return entry == UNSOLVED ? null : OUTCOMES[entry >> CELL_BITS];
+    }
+
+    //returns the outcome ordinal for the player to move in a position that is not finished
+    private int solve(int xMask, int oMask)
+    {
+        int index = index(xMask, oMask);
+        if (table[index] != UNSOLVED)
+        {
+            return table[index] >> CELL_BITS;
+        }
+
+        boolean xToMove = Integer.bitCount(xMask) == Integer.bitCount(oMask);
+        int bestCell = -1;
+        int bestOutcome = -1;
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+        {
+            int bit = 1 << cell;
+            if (((xMask | oMask) & bit) != 0)
+            {
+                continue;
+            }
+
+            int nextX = xToMove ? xMask | bit : xMask;
+            int nextO = xToMove ? oMask : oMask | bit;
+            int outcome;
+            if (BitBoard.isFull(nextX, nextO))
+            {
+                outcome = Outcome.DRAW.ordinal();
+            }
+            else if (BitBoard.hasLine(xToMove ? nextX : nextO))
+            {
+                outcome = Outcome.WIN.ordinal();
+            }
+            else
+            {
+                //the opponent's best result is our worst
+                outcome = Outcome.WIN.ordinal() - solve(nextX, nextO);
+            }
+
+            if (outcome > bestOutcome)
+            {
+                bestOutcome = outcome;
+                bestCell = cell;
+            }
+        }
+
+        table[index] = (byte) ((bestOutcome << CELL_BITS) | bestCell);
+        return bestOutcome;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.tictactoerest.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Represents a finished game that was moved out of the Game table. The
+ * game keeps its id, the players are kept as ids and the board is
+ * packed into one integer (see BitBoardConverter).
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(indexes = {
+        //reads the history of a player newest first
+        @Index(name = "idx_archived_game_player_x", columnList = "playerXId, gameId"),
+        @Index(name = "idx_archived_game_player_o", columnList = "playerOId, gameId")
+})
+public class ArchivedGame
+{
+    @Id
+    private int gameId;
+
+    private int playerXId;
+    private int playerOId;
+    private int board;
+    private int turn;
+    private boolean gameover;
+    private boolean draw;
+    private Instant finishedAt;
+
+    /**
+     * Returns the archived form of a finished game.
+     *
+     * @param game a finished game
+     * @return a new ArchivedGame object
+     */
+    public static ArchivedGame of(Game game)
+    {
+        return ArchivedGame.builder()
+                .gameId(game.getGameId())
+                .playerXId(game.getPlayerX().getPlayerId())
+                .playerOId(game.getPlayerO().getPlayerId())
+                .board(game.getBoard().pack())
+                .turn(game.getTurn())
+                .gameover(game.isGameOver())
+                .draw(game.isDraw())
+                .finishedAt(game.getFinishedAt())
+                .build();
+    }
+
+    /**
+     * Returns this game as a Game object.
+     *
+     * @param playerX player X of the game
+     * @param playerO player O of the game
+     * @return a new Game object
+     */
+    public Game toGame(Player playerX, Player playerO)
+    {
+        return Game.builder()
+                .gameId(gameId)
+                .board(BitBoard.unpack(board))
+                .playerX(playerX)
+                .playerO(playerO)
+                .turn(turn)
+                .gameover(gameover)
+                .draw(draw)
+                .finishedAt(finishedAt)
+                .build();
+    }
+}
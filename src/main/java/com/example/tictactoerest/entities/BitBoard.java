@@ -0,0 +1,192 @@
+package com.example.tictactoerest.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the cells of a tictactoe board as two 9-bit masks,
+ * one for each player. Bit (row * 3 + col) is set in a mask when
+ * that player has a token on the cell.
+ *
+ * Boards are saved as a single integer with the x mask in bits 0-8
+ * and the o mask in bits 9-17 (see {@link BitBoardConverter}).
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BitBoard
+{
+    public static final int CELLS = 9;
+    public static final int ROWS = 3;
+    public static final int COLS = 3;
+    public static final int FULL = (1 << CELLS) - 1;
+    public static final int O_SHIFT = CELLS; //o tokens are packed above the x tokens
+
+    //the three rows, three columns and two diagonals
+    private static final int[] LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    private int xMask = 0;
+    private int oMask = 0;
+
+    /**
+     * Returns the bit for a cell on the board.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return a mask with only the cell bit set
+     */
+    public static int cell(int row, int col)
+    {
+        return 1 << (row * COLS + col);
+    }
+
+    /**
+     * Returns the bit of a token in a packed board (see {@link #pack()}).
+     *
+     * @param playerX true for a token of player X, false for player O
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return a packed board with only the token set
+     */
+    public static int packedCell(boolean playerX, int row, int col)
+    {
+        return playerX ? cell(row, col) : cell(row, col) << O_SHIFT;
+    }
+
+    /**
+     * Returns the board stored in a single integer by {@link #pack()}.
+     *
+     * @param packed the x mask in bits 0-8 and the o mask in bits 9-17
+     * @return a new board
+     */
+    public static BitBoard unpack(int packed)
+    {
+        return new BitBoard(packed & FULL, (packed >>> O_SHIFT) & FULL);
+    }
+
+    /**
+     * Returns the board as a single integer, with the x mask in bits 0-8
+     * and the o mask in bits 9-17.
+     *
+     * @return the packed board
+     */
+    public int pack()
+    {
+        return xMask | (oMask << O_SHIFT);
+    }
+
+    /**
+     * Returns true if the input mask covers a row, column or diagonal.
+     *
+     * @param mask the tokens of a single player
+     * @return true if the mask contains a full line, otherwise false
+     */
+    public static boolean hasLine(int mask)
+    {
+        for (int line : LINES)
+        {
+            if ((mask & line) == line)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the input masks cover all cells.
+     *
+     * @param xMask the tokens of player X
+     * @param oMask the tokens of player O
+     * @return true if there are no empty cells, otherwise false
+     */
+    public static boolean isFull(int xMask, int oMask)
+    {
+        return Integer.bitCount(xMask | oMask) == CELLS;
+    }
+
+    /**
+     * Returns true if a token has been placed on the cell.
+     *
+     * @param cell the cell bit (see {@link #cell(int, int)})
+     * @return true if the cell is occupied, otherwise false
+     */
+    public boolean isOccupied(int cell)
+    {
+        return ((xMask | oMask) & cell) != 0;
+    }
+
+    /**
+     * Places a token on the cell.
+     *
+     * @param playerX true if the token belongs to player X
+     * @param cell the cell bit (see {@link #cell(int, int)})
+     */
+    public void place(boolean playerX, int cell)
+    {
+        if (playerX)
+        {
+            xMask |= cell;
+        }
+        else
+        {
+            oMask |= cell;
+        }
+    }
+
+    /**
+     * Returns true if player X or player O has completed a line.
+     *
+     * @return true if there is a winner, otherwise false
+     */
+    public boolean hasWinner()
+    {
+        return hasLine(xMask) || hasLine(oMask);
+    }
+
+    /**
+     * Returns true if all cells are occupied.
+     *
+     * @return true if there are no empty cells, otherwise false
+     */
+    public boolean isFull()
+    {
+        return isFull(xMask, oMask);
+    }
+
+    /**
+     * Returns the board as an array of 'x', 'o' and ' ' characters
+     * in row-major order.
+     *
+     * @return a new array with one character per cell
+     */
+    public char[] toCharArray()
+    {
+        char[] cells = new char[CELLS];
+        for (int i = 0; i < CELLS; i++)
+        {
+            int bit = 1 << i;
+            if ((xMask & bit) != 0)
+            {
+                cells[i] = 'x';
+            }
+            else if ((oMask & bit) != 0)
+            {
+                cells[i] = 'o';
+            }
+            else
+            {
+                cells[i] = ' ';
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.tictactoerest.entities;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Saves a {@link BitBoard} as a single integer column, with the x mask
+ * in bits 0-8 and the o mask in bits 9-17. A cell can be tested in SQL
+ * with integer arithmetic, e.g. the center is x when
+ * mod(board / 16, 2) = 1 and o when mod(board / 8192, 2) = 1.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Converter
+public class BitBoardConverter implements AttributeConverter<BitBoard, Integer>
+{
+    @Override
+    public Integer convertToDatabaseColumn(BitBoard board)
+    {
+        return board == null ? null : board.pack();
+    }
+
+    @Override
+    public BitBoard convertToEntityAttribute(Integer packed)
+    {
+        return packed == null ? new BitBoard() : BitBoard.unpack(packed);
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.tictactoerest.entities;
 
 import com.example.tictactoerest.exceptions.IllegalMoveException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 /**
  * Represents a match of tictactoe.
@@ -19,16 +22,31 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@JsonPropertyOrder({"gameId", "gameState", "playerX", "playerO", "turn", "draw", "gameOver"})
+@Table(indexes = {
+        //finds the active game of a player without reading their finished games
+        @Index(name = "idx_game_player_x_active", columnList = "playerx_player_id, gameover, draw"),
+        @Index(name = "idx_game_player_o_active", columnList = "playero_player_id, gameover, draw"),
+        //reads the history of a player newest first
+        @Index(name = "idx_game_player_x_history", columnList = "playerx_player_id, gameId"),
+        @Index(name = "idx_game_player_o_history", columnList = "playero_player_id, gameId"),
+        //finds finished games to move to the archive
+        @Index(name = "idx_game_finished_at", columnList = "finishedAt")
+})
 public class Game
 {
-    private static final int CELLS = 9;
-    private static final int ROWS = 3;
-    private static final int COLS = 3;
-
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //ids are reserved from a sequence in blocks, so inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "game_seq")
+    @SequenceGenerator(name = "game_seq", sequenceName = "game_seq", allocationSize = 50)
     private int gameId;
-    private char[] gameState = new char[CELLS];
+
+    //saved as one integer column (see BitBoardConverter)
+    @Convert(converter = BitBoardConverter.class)
+    @Column(nullable = false)
+    @JsonIgnore
+    @Builder.Default
+    private BitBoard board = new BitBoard();
 
     @OneToOne
     private Player playerX;
@@ -39,6 +57,34 @@ public class Game
     private boolean gameover = false; //cache the gameover status
     private boolean draw = false; //cache the draw status
 
+    @JsonIgnore
+    private Instant finishedAt; //null until the game is over or a draw
+
+    @Version
+    @JsonIgnore
+    private int version; //guards against lost updates from concurrent saves
+
+    /**
+     * Returns a copy of this game. The board is copied and
+     * the players are shared.
+     *
+     * @return a new Game object with the same state
+     */
+    public Game copy()
+    {
+        return Game.builder()
+                .gameId(gameId)
+                .board(new BitBoard(board.getXMask(), board.getOMask()))
+                .playerX(playerX)
+                .playerO(playerO)
+                .turn(turn)
+                .gameover(gameover)
+                .draw(draw)
+                .finishedAt(finishedAt)
+                .version(version)
+                .build();
+    }
+
     /**
      * Returns true if the input player is the next player
      * to place a token on the board.
@@ -84,87 +130,25 @@ public class Game
         return gameover;
     }
 
-    private boolean determineIfDraw()
-    {
-        for (int i = 0; i < gameState.length; i++)
-        {
-            if (gameState[i] == ' ')
-            {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean determineIfGameover()
-    {
-        return checkRows() || checkCols() || checkDiagonals();
-    }
-
-    private boolean checkRows()
+    /**
+     * Returns the board as an array of 'x', 'o' and ' ' characters.
+     * This is the view of the board sent to clients.
+     *
+     * @return the tokens on the board in row-major order
+     */
+    public char[] getGameState()
     {
-        for (int row = 0; row < ROWS; row++)
-        {
-            boolean rowEqual = true;
-            for (int col = 1; col < COLS; col++)
-            {
-                //check for a solution across a row
-                int index = row * COLS + col;
-                if (gameState[index - 1] == ' ' || gameState[index] == ' ')
-                {
-                    rowEqual = false;
-                    break;
-                } else if (gameState[index - 1] != gameState[index])
-                {
-                    rowEqual = false;
-                    break;
-                }
-            }
-
-            if (rowEqual)
-            {
-                return rowEqual;
-            }
-        }
-        return false;
+        return board.toCharArray();
     }
 
-    private boolean checkCols()
+    private boolean determineIfDraw()
     {
-        for (int col = 0; col < COLS; col++)
-        {
-            boolean colEqual = true;
-            for (int row = 1; row < ROWS; row++)
-            {
-                //check for a solution across a cols
-                int index = row * COLS + col;
-                if (gameState[index - ROWS] == ' ' || gameState[index] == ' ')
-                {
-                    colEqual = false;
-                    break;
-                } else if (gameState[index - ROWS] != gameState[index])
-                {
-                    colEqual = false;
-                    break;
-                }
-            }
-
-            if (colEqual)
-            {
-                return colEqual;
-            }
-        }
-        return false;
+        return board.isFull();
     }
 
-    private boolean checkDiagonals()
+    private boolean determineIfGameover()
     {
-        return (gameState[0] != ' ' &&
-                gameState[0] == gameState[4] &&
-                gameState[4] == gameState[8]) || (
-                gameState[2] != ' ' &&
-                        gameState[2] == gameState[4] &&
-                        gameState[4] == gameState[6]);
+        return board.hasWinner();
     }
 
     /**
@@ -209,23 +193,27 @@ public class Game
      */
     public void move(Player player, int row, int col)
     {
-        int index = row * COLS + col;
-        if (row < 0 || row >= 3 || col < 0 || col >= 3)
+        if (row < 0 || row >= BitBoard.ROWS || col < 0 || col >= BitBoard.COLS)
         {
             throw new IllegalMoveException(String.format("Bad row (%s) or column (%s)", row, col));
         }
-        else if (gameState[index] != ' ')
+
+        int cell = BitBoard.cell(row, col);
+        if (board.isOccupied(cell))
         {
             throw new IllegalMoveException(String.format("Row %s, col %s, already occupied", row, col));
         }
 
-        char token = isPlayerX(player) ? 'x' : 'o';
-        gameState[index] = token;
+        board.place(isPlayerX(player), cell);
         turn++;
 
         //save game state
         draw = determineIfDraw();
         gameover = determineIfGameover();
+        if (draw || gameover)
+        {
+            finishedAt = Instant.now();
+        }
     }
 
     /**
@@ -0,0 +1,13 @@
+package com.example.tictactoerest.entities;
+
+/**
+ * Whether a match of tictactoe is still being played.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public enum GameStatus
+{
+    ACTIVE,
+    FINISHED
+}
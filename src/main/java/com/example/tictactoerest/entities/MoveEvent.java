@@ -0,0 +1,38 @@
+package com.example.tictactoerest.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * Represents a single move in the append-only move log. Moves are
+ * only ever inserted, and are removed when the moves of a finished
+ * game are compacted into a {@link MoveSnapshot}.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table(indexes = {
+        //reads the moves of a game in order, and rejects a second move on the same ply
+        @Index(name = "idx_move_event_game_ply", columnList = "gameId, ply", unique = true)
+})
+public class MoveEvent
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "move_event_seq")
+    @SequenceGenerator(name = "move_event_seq", sequenceName = "move_event_seq", allocationSize = 50)
+    private long eventId;
+
+    private int gameId;
+    private int ply; //the turn the move was made on, even = x, odd = o
+    private int playerId;
+    private int cell; //row * 3 + col
+}
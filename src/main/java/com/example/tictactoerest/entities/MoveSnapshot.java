@@ -0,0 +1,45 @@
+package com.example.tictactoerest.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Represents the moves of a finished game in a single row, replacing
+ * its rows in the move log. The cell of each ply is packed into four
+ * bits of a long, and the players are those of the game (X on even
+ * plies, O on odd plies).
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MoveSnapshot
+{
+    public static final int BITS_PER_PLY = 4;
+
+    @Id
+    private int gameId;
+
+    private int plies;
+    private long cells; //the cell of ply i in bits 4i to 4i + 3
+
+    /**
+     * Returns the cell of a ply.
+     *
+     * @param ply the ply, from 0 to plies - 1
+     * @return the cell (row * 3 + col)
+     */
+    public int cellAt(int ply)
+    {
+        return (int) (cells >>> (ply * BITS_PER_PLY)) & ((1 << BITS_PER_PLY) - 1);
+    }
+}
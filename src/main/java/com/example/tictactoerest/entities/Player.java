@@ -14,6 +14,8 @@ import javax.persistence.*;
  * @version 1.0
  */
 @Entity
+//names are unique, so concurrent saves of the same name cannot both succeed
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_player_name", columnNames = "name"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -21,7 +23,9 @@ import javax.persistence.*;
 public class Player
 {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    //ids are reserved from a sequence in blocks, so inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "player_seq")
+    @SequenceGenerator(name = "player_seq", sequenceName = "player_seq", allocationSize = 50)
     private int playerId;
     private String name;
 
@@ -29,6 +33,16 @@ public class Player
     private int losses = 0;
     private int draws = 0;
 
+    /**
+     * Returns a copy of this player.
+     *
+     * @return a new Player object with the same values
+     */
+    public Player copy()
+    {
+        return new Player(playerId, name, wins, losses, draws);
+    }
+
     /**
      * Increments the wins for the player.
      */
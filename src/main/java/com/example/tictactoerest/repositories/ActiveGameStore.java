@@ -0,0 +1,546 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.Game;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An in-memory store for games that are being played, in front of
+ * the game data layer. Moves update the copy in memory, and changed
+ * games are written to the database in batches:
+ *
+ * - when a game ends (immediately)
+ * - every tictactoe.write-behind.flush-interval-ms milliseconds
+ * - when the application shuts down
+ *
+ * Moves made since the last flush are lost if the process dies,
+ * so the flush interval bounds the loss window. Set
+ * tictactoe.write-behind.enabled=false to write every move directly.
+ *
+ * Games without a move for tictactoe.write-behind.idle-minutes minutes
+ * (e.g. abandoned games) are written and removed from memory, and are
+ * read from the data layer again if they are played later.
+ *
+ * Finished games that were moved to the archive (see {@link GameArchive})
+ * are read from there when they are not in the Game table.
+ *
+ * Games returned by findById() are shared, so callers must hold the
+ * game's lock (see {@link GameLocks}) while reading or changing them,
+ * and while calling update(), restore(), evict() or deleteById().
+ * Writes to the data layer are made under the locks of the games
+ * written, so each write sees the version of the last write of the
+ * same game.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class ActiveGameStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ActiveGameStore.class);
+
+    //games written in one batch by a flush, and so the most game locks held at once
+    private static final int FLUSH_BATCH_SIZE = 50;
+
+    private IGameRepository gameRepo;
+    private GameArchive archive;
+    private GameLocks locks;
+    private boolean enabled;
+    private long idleNanos;
+
+    private final ConcurrentMap<Integer, Game> games = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    //when each game in memory was last loaded or changed, from System.nanoTime()
+    private final ConcurrentMap<Integer, Long> touched = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a store in front of the game data layer.
+     *
+     * @param gameRepo the game data layer
+     * @param archive the archived finished games
+     * @param locks the locks that guard each game
+     * @param enabled false to write every change to the data layer immediately
+     * @param idleMinutes games without a move for this long are removed from memory
+     */
+    public ActiveGameStore(IGameRepository gameRepo, GameArchive archive, GameLocks locks,
+                           @Value("${tictactoe.write-behind.enabled:true}") boolean enabled,
+                           @Value("${tictactoe.write-behind.idle-minutes:30}") long idleMinutes)
+    {
+        this.gameRepo = gameRepo;
+        this.archive = archive;
+        this.locks = locks;
+        this.enabled = enabled;
+        this.idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+    }
+
+    /**
+     * Returns a game by id, from memory if it is being played,
+     * otherwise from the data layer or the archive.
+     *
+     * @param gameId the game id
+     * @return a Game object wrapped in an Optional
+     */
+    public Optional<Game> findById(int gameId)
+    {
+        Game game = games.get(gameId);
+        if (game != null)
+        {
+            return Optional.of(game);
+        }
+
+        Optional<Game> saved = gameRepo.findById(gameId);
+        if (saved.isEmpty())
+        {
+            return archive.findById(gameId);
+        }
+        if (enabled && saved.isPresent() && isActive(saved.get()))
+        {
+            //games in memory are copies, so they are never attached to a persistence context
+            return Optional.of(games.computeIfAbsent(gameId, id -> {
+                touch(id);
+                return saved.get().copy();
+            }));
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the turn counter of a game, from memory if it is being
+     * played, otherwise with a query that does not load the game.
+     *
+     * @param gameId the game id
+     * @return the turn wrapped in an Optional
+     */
+    public Optional<Integer> findTurn(int gameId)
+    {
+        if (games.containsKey(gameId))
+        {
+            Lock lock = locks.forGame(gameId);
+            lock.lock();
+            try
+            {
+                Game active = games.get(gameId);
+                if (active != null)
+                {
+                    return Optional.of(active.getTurn());
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        //finished games are written before they leave memory, so the saved turn is current
+        Optional<Integer> turn = gameRepo.findTurnById(gameId);
+        return turn.isPresent() ? turn : archive.findTurnById(gameId);
+    }
+
+    /**
+     * Loads the active games among the input ids into memory with a
+     * single query, so later calls to findById() do not read them one
+     * at a time.
+     *
+     * @param gameIds the game ids
+     */
+    public void loadAll(Collection<Integer> gameIds)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (Integer gameId : gameIds)
+        {
+            if (!games.containsKey(gameId))
+            {
+                missing.add(gameId);
+            }
+        }
+
+        if (!missing.isEmpty())
+        {
+            for (Game saved : gameRepo.findAllById(missing))
+            {
+                if (isActive(saved) && games.putIfAbsent(saved.getGameId(), saved.copy()) == null)
+                {
+                    touch(saved.getGameId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the game held in memory, if there is one. Used to
+     * replace games read directly from the data layer, which may not have
+     * the latest moves yet.
+     *
+     * @param game a game read from the data layer
+     * @return a copy of the game in memory, otherwise the input game
+     */
+    public Game current(Game game)
+    {
+        if (!games.containsKey(game.getGameId()))
+        {
+            return game;
+        }
+
+        Game active = copyOf(game.getGameId());
+        return active == null ? game : active;
+    }
+
+    //returns a copy of a game in memory, or null if the game is not in memory
+    private Game copyOf(int gameId)
+    {
+        Lock lock = locks.forGame(gameId);
+        lock.lock();
+        try
+        {
+            Game active = games.get(gameId);
+            return active == null ? null : active.copy();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the copies held in memory for a list of games read from
+     * the data layer (see {@link #current(Game)}).
+     *
+     * @param games games read from the data layer
+     * @return a new list with the latest version of each game
+     */
+    public List<Game> current(List<Game> games)
+    {
+        List<Game> current = new ArrayList<>(games.size());
+        for (Game game : games)
+        {
+            current.add(current(game));
+        }
+        return current;
+    }
+
+    /**
+     * Saves a new game to the data layer and keeps it in memory.
+     *
+     * @param game a new game
+     * @return the saved game
+     */
+    public Game add(Game game)
+    {
+        game = gameRepo.save(game);
+        if (enabled)
+        {
+            game = game.copy();
+            touch(game.getGameId());
+            games.put(game.getGameId(), game);
+        }
+        return game;
+    }
+
+    /**
+     * Saves new games to the data layer in a single batch and keeps
+     * them in memory.
+     *
+     * @param newGames new games
+     * @return the saved games, in the same order
+     */
+    public List<Game> addAll(List<Game> newGames)
+    {
+        List<Game> saved = gameRepo.saveAll(newGames);
+        if (!enabled)
+        {
+            return saved;
+        }
+
+        List<Game> added = new ArrayList<>(saved.size());
+        for (Game game : saved)
+        {
+            game = game.copy();
+            touch(game.getGameId());
+            games.put(game.getGameId(), game);
+            added.add(game);
+        }
+        return added;
+    }
+
+    /**
+     * Records a change to a game. Finished games are written to the data
+     * layer and removed from memory, other games are written on the
+     * next flush. Finished games are flushed before this returns, so in
+     * a transaction a version conflict is found before anything written
+     * after it.
+     *
+     * @param game the changed game
+     * @return the game
+     */
+    public Game update(Game game)
+    {
+        if (!enabled)
+        {
+            return isActive(game) ? gameRepo.save(game) : gameRepo.saveAndFlush(game);
+        }
+
+        if (isActive(game))
+        {
+            touch(game.getGameId());
+            dirty.add(game.getGameId());
+            return game;
+        }
+
+        //the caller holds the game's lock, so no flush is writing this game
+        game.setVersion(gameRepo.saveAndFlush(game.copy()).getVersion());
+        forget(game.getGameId());
+        return game;
+    }
+
+    /**
+     * Puts back the copy of a game taken before a change that could not
+     * be saved, so the change is undone in memory.
+     *
+     * @param before the game as it was before the change
+     */
+    public void restore(Game before)
+    {
+        if (enabled)
+        {
+            touch(before.getGameId());
+            games.put(before.getGameId(), before);
+            dirty.add(before.getGameId());
+        }
+    }
+
+    /**
+     * Removes a game from memory without writing it, so the next read
+     * loads it from the data layer. Used when the saved game is newer
+     * than the game in memory.
+     *
+     * @param gameId the game id
+     */
+    public void evict(int gameId)
+    {
+        forget(gameId);
+    }
+
+    /**
+     * Removes a game from memory and from the data layer or the archive.
+     *
+     * @param gameId the game id
+     */
+    public void deleteById(int gameId)
+    {
+        forget(gameId);
+        if (!archive.deleteById(gameId))
+        {
+            gameRepo.deleteById(gameId);
+        }
+    }
+
+    /**
+     * Writes all games changed since the last flush to the data layer,
+     * in batches. Each batch is written under the locks of its games, so
+     * moves in other games are not held up, and a game that ends while
+     * it is being flushed is written after the flush, with its version.
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.write-behind.flush-interval-ms:1000}")
+    public void flush()
+    {
+        //locks are taken in stripe order, see GameLocks.stripeOf()
+        List<Integer> changed = new ArrayList<>(dirty);
+        changed.sort(Comparator.comparingInt(locks::stripeOf));
+        for (int from = 0; from < changed.size(); from += FLUSH_BATCH_SIZE)
+        {
+            flush(changed.subList(from, Math.min(from + FLUSH_BATCH_SIZE, changed.size())));
+        }
+    }
+
+    //writes one batch of games, holding their locks
+    private void flush(List<Integer> gameIds)
+    {
+        List<Lock> held = new ArrayList<>(gameIds.size());
+        try
+        {
+            List<Game> batch = new ArrayList<>(gameIds.size());
+            for (Integer gameId : gameIds)
+            {
+                Lock lock = locks.forGame(gameId);
+                lock.lock();
+                held.add(lock);
+
+                //a game changed after this point is marked dirty for the next flush;
+                //games that ended or were deleted are no longer in memory
+                dirty.remove(gameId);
+                Game active = games.get(gameId);
+                if (active != null)
+                {
+                    batch.add(active.copy());
+                }
+            }
+
+            if (batch.isEmpty())
+            {
+                return;
+            }
+
+            try
+            {
+                updateVersions(gameRepo.saveAll(batch));
+            }
+            catch (OptimisticLockingFailureException ex)
+            {
+                saveEach(batch);
+            }
+        }
+        finally
+        {
+            for (int i = held.size() - 1; i >= 0; i--)
+            {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    //saves games one at a time, so a game changed elsewhere does not hold back the others;
+    //the caller holds the locks of the games
+    private void saveEach(List<Game> batch)
+    {
+        for (Game game : batch)
+        {
+            try
+            {
+                updateVersions(List.of(gameRepo.save(game)));
+            }
+            catch (OptimisticLockingFailureException ex)
+            {
+                //the saved game is newer, so reload it on the next read
+                LOG.warn("Game {} was changed outside this store, discarding moves in memory", game.getGameId());
+                forget(game.getGameId());
+            }
+        }
+    }
+
+    //the caller holds the locks of the games
+    private void updateVersions(List<Game> saved)
+    {
+        for (Game game : saved)
+        {
+            Game active = games.get(game.getGameId());
+            if (active != null)
+            {
+                active.setVersion(game.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Writes and removes from memory the games that have not been
+     * changed for tictactoe.write-behind.idle-minutes, so abandoned
+     * games do not stay in memory forever.
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.write-behind.idle-check-ms:60000}")
+    public void evictIdle()
+    {
+        long now = System.nanoTime();
+        for (Map.Entry<Integer, Long> entry : touched.entrySet())
+        {
+            if (now - entry.getValue() < idleNanos)
+            {
+                continue;
+            }
+
+            int gameId = entry.getKey();
+            Lock lock = locks.forGame(gameId);
+            lock.lock();
+            try
+            {
+                //a move may have been made since the check above
+                Long last = touched.get(gameId);
+                if (last != null && now - last >= idleNanos)
+                {
+                    evictLocked(gameId);
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    //writes the game if it changed and removes it from memory, the caller holds the game's lock
+    private void evictLocked(int gameId)
+    {
+        Game active = games.get(gameId);
+        if (active != null && dirty.remove(gameId))
+        {
+            try
+            {
+                gameRepo.save(active.copy());
+            }
+            catch (OptimisticLockingFailureException ex)
+            {
+                LOG.warn("Game {} was changed outside this store, discarding moves in memory", gameId);
+            }
+        }
+        forget(gameId);
+    }
+
+    //records that a game in memory was loaded or changed
+    private void touch(int gameId)
+    {
+        touched.put(gameId, System.nanoTime());
+    }
+
+    //removes a game from memory without writing it
+    private void forget(int gameId)
+    {
+        games.remove(gameId);
+        dirty.remove(gameId);
+        touched.remove(gameId);
+    }
+
+    /**
+     * Writes any remaining changes before the data layer is closed.
+     */
+    @PreDestroy
+    public void close()
+    {
+        flush();
+    }
+
+    /**
+     * Returns the number of games held in memory.
+     *
+     * @return the number of active games in memory
+     */
+    public int size()
+    {
+        return games.size();
+    }
+
+    private static boolean isActive(Game game)
+    {
+        return !game.isGameOver() && !game.isDraw();
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.ArchivedGame;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The archive tier for finished games. Every
+ * tictactoe.archive.interval-ms milliseconds, games that finished more
+ * than tictactoe.archive.age-minutes minutes ago are moved from the Game
+ * table to the {@link ArchivedGame} table in batches, so the Game table
+ * only holds games being played and recently finished games.
+ *
+ * Archived games keep their ids, and the read methods here return them
+ * as Game objects, so callers can merge them with saved games. Set
+ * tictactoe.archive.enabled=false to keep finished games where they are
+ * (the mmap profile does, as its game records have no finish time).
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class GameArchive
+{
+    private static final Logger LOG = LoggerFactory.getLogger(GameArchive.class);
+    private static final int ARCHIVE_BATCH_SIZE = 500;
+
+    private IGameRepository gameRepo;
+    private IArchivedGameRepository archiveRepo;
+    private IPlayerRepository playerRepo;
+    private PlayerCache playerCache;
+    private MoveLog moveLog;
+    private EntityManager entityManager;
+    private TransactionTemplate transactions;
+    private boolean enabled;
+    private Duration age;
+
+    /**
+     * Creates an archive beside the game data layer.
+     *
+     * @param gameRepo the game data layer
+     * @param archiveRepo the archived game data layer
+     * @param playerRepo the player data layer, to read the players of archived games
+     * @param playerCache the player cache, to read the players of streamed games
+     * @param moveLog the move log, compacted before games are archived
+     * @param entityManager the persistence context, used to insert archived games
+     * @param transactionManager moves each batch of games in its own transaction
+     * @param enabled false to never move games to the archive
+     * @param ageMinutes how long a game stays in the Game table after it finishes
+     */
+    public GameArchive(IGameRepository gameRepo, IArchivedGameRepository archiveRepo,
+                       IPlayerRepository playerRepo, PlayerCache playerCache, MoveLog moveLog,
+                       EntityManager entityManager, PlatformTransactionManager transactionManager,
+                       @Value("${tictactoe.archive.enabled:true}") boolean enabled,
+                       @Value("${tictactoe.archive.age-minutes:1440}") long ageMinutes)
+    {
+        this.gameRepo = gameRepo;
+        this.archiveRepo = archiveRepo;
+        this.playerRepo = playerRepo;
+        this.playerCache = playerCache;
+        this.moveLog = moveLog;
+        this.entityManager = entityManager;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.age = Duration.ofMinutes(ageMinutes);
+    }
+
+    /**
+     * Moves the games that finished before the configured age into the
+     * archive, inserting and deleting them in batches. Each batch is
+     * committed on its own, so a large backlog neither holds one long
+     * transaction nor loses the batches already moved if a later one
+     * fails. Does nothing if archiving is disabled.
+     *
+     * @return the number of games archived
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.archive.interval-ms:60000}")
+    public int archive()
+    {
+        if (!enabled)
+        {
+            return 0;
+        }
+
+        //compaction only finds games in the Game table, so fold their moves first
+        moveLog.compact();
+
+        Instant cutoff = Instant.now().minus(age);
+        int archived = 0;
+        int batch;
+        while ((batch = transactions.execute(status -> archiveBatch(cutoff))) > 0)
+        {
+            archived += batch;
+        }
+
+        if (archived > 0)
+        {
+            LOG.info("Archived {} finished games", archived);
+        }
+        return archived;
+    }
+
+    //moves one batch of games, in the transaction of the caller
+    private int archiveBatch(Instant cutoff)
+    {
+        List<Integer> gameIds = gameRepo.findIdsFinishedBefore(cutoff, PageRequest.of(0, ARCHIVE_BATCH_SIZE));
+        if (gameIds.isEmpty())
+        {
+            return 0;
+        }
+
+        //ids are kept, so persist() avoids the select that merge() would make
+        for (Game game : gameRepo.findAllWithPlayersById(gameIds))
+        {
+            entityManager.persist(ArchivedGame.of(game));
+        }
+        entityManager.flush();
+        gameRepo.deleteByGameIds(gameIds);
+        entityManager.clear();
+        return gameIds.size();
+    }
+
+    /**
+     * Returns an archived game by id.
+     *
+     * @param gameId the game id
+     * @return a Game object wrapped in an Optional
+     */
+    public Optional<Game> findById(int gameId)
+    {
+        return archiveRepo.findById(gameId).map(archived -> toGames(List.of(archived)).get(0));
+    }
+
+    /**
+     * Returns the turn counter of an archived game.
+     *
+     * @param gameId the game id
+     * @return the turn wrapped in an Optional
+     */
+    public Optional<Integer> findTurnById(int gameId)
+    {
+        return archiveRepo.findTurnById(gameId);
+    }
+
+    /**
+     * Returns all archived games in id order.
+     *
+     * @return a list of games
+     */
+    public List<Game> findAll()
+    {
+        return toGames(archiveRepo.findAllByOrderByGameId());
+    }
+
+    /**
+     * Returns the archived games with the input ids in id order.
+     *
+     * @param gameIds the game ids
+     * @return a list of games
+     */
+    public List<Game> findAllById(Collection<Integer> gameIds)
+    {
+        List<ArchivedGame> archived = archiveRepo.findAllById(gameIds);
+        archived.sort(Comparator.comparingInt(ArchivedGame::getGameId));
+        return toGames(archived);
+    }
+
+    /**
+     * Returns the archived games of a player in id order.
+     *
+     * @param player a player
+     * @return a list of games with the input player
+     */
+    public List<Game> findByPlayer(Player player)
+    {
+        return toGames(archiveRepo.findByPlayerXIdOrPlayerOIdOrderByGameId(player.getPlayerId(), player.getPlayerId()));
+    }
+
+    /**
+     * Returns whether a player is in an archived game.
+     *
+     * @param playerId a player id
+     * @return true if the player is in an archived game, otherwise false
+     */
+    public boolean hasGames(int playerId)
+    {
+        return archiveRepo.existsByPlayerXIdOrPlayerOId(playerId, playerId);
+    }
+
+    /**
+     * Returns the archived games with an id greater than the input id,
+     * in id order.
+     *
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games
+     */
+    public List<Game> findPageAfter(int gameId, Pageable page)
+    {
+        return toGames(archiveRepo.findPageAfter(gameId, page));
+    }
+
+    /**
+     * Returns the archived games of a player with an id less than the
+     * input id, newest first.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games with the input player
+     */
+    public List<Game> findHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        //one limited query per player column, so each can walk its player/id index
+        List<ArchivedGame> archived = new ArrayList<>(archiveRepo.findHistoryAsXBefore(player.getPlayerId(), gameId, page));
+        archived.addAll(archiveRepo.findHistoryAsOBefore(player.getPlayerId(), gameId, page));
+        archived.sort(Comparator.comparingInt(ArchivedGame::getGameId).reversed());
+        return toGames(archived.subList(0, Math.min(archived.size(), page.getPageSize())));
+    }
+
+    /**
+     * Returns the ids of a page of archived games with a token on a cell,
+     * in id order.
+     *
+     * @param token the packed bit of the token (see BitBoard.packedCell())
+     * @param gameId the last game id seen by the caller
+     * @param page the number of game ids to return
+     * @return a list of game ids
+     */
+    public List<Integer> findIdsWithTokenAfter(int token, int gameId, Pageable page)
+    {
+        return archiveRepo.findIdsWithTokenAfter(token, gameId, page);
+    }
+
+    /**
+     * Returns all archived games in id order as a stream that reads rows
+     * from the database as it is consumed. Players are read through the
+     * player cache, so memory use does not grow with the number of
+     * players streamed. The stream must be consumed and closed inside a
+     * transaction.
+     *
+     * @return a stream of games
+     */
+    public Stream<Game> streamAll()
+    {
+        return archiveRepo.streamAll().map(archived -> archived.toGame(
+                playerCache.findById(archived.getPlayerXId()).orElse(null),
+                playerCache.findById(archived.getPlayerOId()).orElse(null)));
+    }
+
+    /**
+     * Removes an archived game.
+     *
+     * @param gameId the game id
+     * @return true if the game was archived, otherwise false
+     */
+    public boolean deleteById(int gameId)
+    {
+        if (!archiveRepo.existsById(gameId))
+        {
+            return false;
+        }
+        archiveRepo.deleteById(gameId);
+        return true;
+    }
+
+    /**
+     * Merges two lists of games that are each sorted by id into one
+     * sorted list.
+     *
+     * @param games a sorted list of games
+     * @param archived a sorted list of archived games
+     * @param newestFirst true if the lists are sorted by descending id
+     * @param limit the maximum number of games to return
+     * @return a new sorted list of games
+     */
+    public static List<Game> merge(List<Game> games, List<Game> archived, boolean newestFirst, int limit)
+    {
+        Comparator<Game> order = Comparator.comparingInt(Game::getGameId);
+        if (newestFirst)
+        {
+            order = order.reversed();
+        }
+
+        List<Game> merged = new ArrayList<>(Math.min(limit, games.size() + archived.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < games.size() || j < archived.size()))
+        {
+            if (j == archived.size() || (i < games.size() && order.compare(games.get(i), archived.get(j)) <= 0))
+            {
+                merged.add(games.get(i++));
+            }
+            else
+            {
+                merged.add(archived.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    //reads the players of the games with one query
+    private List<Game> toGames(List<ArchivedGame> archived)
+    {
+        Set<Integer> playerIds = new HashSet<>();
+        for (ArchivedGame game : archived)
+        {
+            playerIds.add(game.getPlayerXId());
+            playerIds.add(game.getPlayerOId());
+        }
+
+        Map<Integer, Player> players = new HashMap<>();
+        if (!playerIds.isEmpty())
+        {
+            for (Player player : playerRepo.findAllById(playerIds))
+            {
+                players.put(player.getPlayerId(), player);
+            }
+        }
+
+        List<Game> games = new ArrayList<>(archived.size());
+        for (ArchivedGame game : archived)
+        {
+            games.add(game.toGame(players.get(game.getPlayerXId()), players.get(game.getPlayerOId())));
+        }
+        return games;
+    }
+}
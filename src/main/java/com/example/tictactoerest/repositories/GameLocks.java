@@ -0,0 +1,59 @@
+package com.example.tictactoerest.repositories;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks for serializing changes to a game. Each game id maps
+ * to one of a fixed number of locks, so changes to the same game are
+ * made one at a time while most other games are changed in parallel.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class GameLocks
+{
+    private static final int STRIPES = 256; //must be a power of two
+
+    private final Lock[] locks = new Lock[STRIPES];
+
+    /**
+     * Creates the locks.
+     */
+    public GameLocks()
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the lock that guards a game. The lock may be shared
+     * with other games.
+     *
+     * @param gameId the game id
+     * @return the lock for the game
+     */
+    public Lock forGame(int gameId)
+    {
+        return locks[stripeOf(gameId)];
+    }
+
+    /**
+     * Returns the index of the lock that guards a game. Code that holds
+     * the locks of several games at once must take them in order of
+     * this index, so two such callers cannot deadlock.
+     *
+     * @param gameId the game id
+     * @return the stripe of the game, from 0 to the number of locks - 1
+     */
+    public int stripeOf(int gameId)
+    {
+        //game ids are sequential, so the low bits spread them across stripes
+        return gameId & (STRIPES - 1);
+    }
+}
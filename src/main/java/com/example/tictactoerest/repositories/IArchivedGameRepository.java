@@ -0,0 +1,125 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.ArchivedGame;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * A data layer for persisting ArchivedGame objects.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Repository
+public interface IArchivedGameRepository extends JpaRepository<ArchivedGame, Integer>
+{
+    /**
+     * Returns the turn counter of an archived game.
+     *
+     * @param gameId the game id
+     * @return the turn wrapped in an Optional
+     */
+    @Query("select a.turn from ArchivedGame a where a.gameId = :gameId")
+    Optional<Integer> findTurnById(@Param("gameId") int gameId);
+
+    /**
+     * Returns all archived games in id order.
+     *
+     * @return a list of archived games
+     */
+    List<ArchivedGame> findAllByOrderByGameId();
+
+    /**
+     * Returns the archived games of a player in id order.
+     *
+     * @param playerXId a player id
+     * @param playerOId a player id
+     * @return a list of archived games with one of the input players
+     */
+    List<ArchivedGame> findByPlayerXIdOrPlayerOIdOrderByGameId(int playerXId, int playerOId);
+
+    /**
+     * Returns whether a player is in an archived game.
+     *
+     * @param playerXId a player id
+     * @param playerOId a player id
+     * @return true if an archived game has one of the input players, otherwise false
+     */
+    boolean existsByPlayerXIdOrPlayerOId(int playerXId, int playerOId);
+
+    /**
+     * Returns the archived games with an id greater than the input id,
+     * in id order.
+     *
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of archived games
+     */
+    @Query("select a from ArchivedGame a where a.gameId > :gameId order by a.gameId")
+    List<ArchivedGame> findPageAfter(@Param("gameId") int gameId, Pageable page);
+
+    /**
+     * Returns the archived games a player played as X with an id less
+     * than the input id, newest first.
+     *
+     * @param playerId a player id
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of archived games with the input player as X
+     */
+    @Query("select a from ArchivedGame a where a.playerXId = :playerId " +
+           "and a.gameId < :gameId order by a.gameId desc")
+    List<ArchivedGame> findHistoryAsXBefore(@Param("playerId") int playerId, @Param("gameId") int gameId,
+                                            Pageable page);
+
+    /**
+     * Returns the archived games a player played as O with an id less
+     * than the input id, newest first. Games against themselves are left
+     * to findHistoryAsXBefore(), so they are not returned twice.
+     *
+     * @param playerId a player id
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of archived games with the input player as O
+     */
+    @Query("select a from ArchivedGame a where a.playerOId = :playerId and a.playerXId <> :playerId " +
+           "and a.gameId < :gameId order by a.gameId desc")
+    List<ArchivedGame> findHistoryAsOBefore(@Param("playerId") int playerId, @Param("gameId") int gameId,
+                                            Pageable page);
+
+    /**
+     * Returns the ids of a page of archived games with a token on a cell,
+     * in id order (see IGameRepository.findIdsWithTokenAfter()).
+     *
+     * @param token the packed bit of the token (see BitBoard.packedCell())
+     * @param gameId the last game id seen by the caller
+     * @param page the number of game ids to return
+     * @return a list of game ids
+     */
+    @Query(value = "select a.game_id from archived_game a " +
+                   "where a.game_id > :gameId and mod(a.board / :token, 2) = 1 order by a.game_id",
+           nativeQuery = true)
+    List<Integer> findIdsWithTokenAfter(@Param("token") int token, @Param("gameId") int gameId, Pageable page);
+
+    /**
+     * Returns all archived games in id order as a stream that reads rows
+     * from the database as it is consumed. The stream must be consumed
+     * and closed inside a transaction.
+     *
+     * @return a stream of archived games
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a from ArchivedGame a order by a.gameId")
+    Stream<ArchivedGame> streamAll();
+}
@@ -1,11 +1,25 @@
 package com.example.tictactoerest.repositories;
 
+import com.example.tictactoerest.commands.MatchUp;
 import com.example.tictactoerest.entities.Game;
 import com.example.tictactoerest.entities.Player;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
  * A data layer for persisting Game objects.
@@ -26,4 +40,259 @@ public interface IGameRepository extends JpaRepository<Game, Integer>
      * @return a list of games with one of the input players
      */
     List<Game> findAllByPlayerXEqualsOrPlayerOEquals(Player playerX, Player playerO);
+
+    /**
+     * Returns whether the input player is player X in a game that is not
+     * finished. The query stops at the first game found, using the
+     * player X/status index on Game.
+     *
+     * @param player a player
+     * @return true if the player is X in an active game, otherwise false
+     */
+    boolean existsByPlayerXAndGameoverFalseAndDrawFalse(Player player);
+
+    /**
+     * Returns whether the input player is player O in a game that is not
+     * finished. The query stops at the first game found, using the
+     * player O/status index on Game.
+     *
+     * @param player a player
+     * @return true if the player is O in an active game, otherwise false
+     */
+    boolean existsByPlayerOAndGameoverFalseAndDrawFalse(Player player);
+
+    /**
+     * Returns the turn counter of a game, without loading the game
+     * or its players.
+     *
+     * @param gameId the game id
+     * @return the turn wrapped in an Optional
+     */
+    @Query("select g.turn from Game g where g.gameId = :gameId")
+    Optional<Integer> findTurnById(@Param("gameId") int gameId);
+
+    /**
+     * Returns the players of every unfinished game that includes one
+     * of the input players, in a single query.
+     *
+     * @param playerIds the player ids to search for
+     * @return the player ids of the active games
+     */
+    @Query("select new com.example.tictactoerest.commands.MatchUp(g.playerX.playerId, g.playerO.playerId) " +
+           "from Game g where (g.playerX.playerId in :playerIds or g.playerO.playerId in :playerIds) " +
+           "and g.gameover = false and g.draw = false")
+    List<MatchUp> findActiveMatchUps(@Param("playerIds") Collection<Integer> playerIds);
+
+    /**
+     * Returns the games with an id greater than the input id, in id order.
+     * The players are fetched in the same query.
+     *
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.gameId > :gameId order by g.gameId")
+    List<Game> findPageAfter(@Param("gameId") int gameId, Pageable page);
+
+    /**
+     * Returns the ids of a page of games with a token on a cell, in id
+     * order, by testing one bit of the packed board column (see
+     * BitBoardConverter). The query is native because JPQL types the
+     * board as a BitBoard.
+     *
+     * @param token the packed bit of the token (see BitBoard.packedCell())
+     * @param gameId the last game id seen by the caller
+     * @param page the number of game ids to return
+     * @return a list of game ids
+     */
+    @Query(value = "select g.game_id from game g " +
+                   "where g.game_id > :gameId and mod(g.board / :token, 2) = 1 order by g.game_id",
+           nativeQuery = true)
+    List<Integer> findIdsWithTokenAfter(@Param("token") int token, @Param("gameId") int gameId, Pageable page);
+
+    /**
+     * Returns the games with the input ids in id order. The players are
+     * fetched in the same query.
+     *
+     * @param gameIds the game ids
+     * @return a list of games
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.gameId in :gameIds order by g.gameId")
+    List<Game> findAllWithPlayersById(@Param("gameIds") Collection<Integer> gameIds);
+
+    /**
+     * Returns all games in id order as a stream that reads rows from the
+     * database as it is consumed. The stream must be consumed and closed
+     * inside a transaction.
+     *
+     * @return a stream of games
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO order by g.gameId")
+    Stream<Game> streamAll();
+
+    /**
+     * Returns the games of a player with an id less than the input id,
+     * newest first. The games as player X and as player O are read with
+     * one query each, so both can walk their player/id index.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games with the input player
+     */
+    default List<Game> findHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return GameArchive.merge(findHistoryAsXBefore(player, gameId, page),
+                findHistoryAsOBefore(player, gameId, page), true, page.getPageSize());
+    }
+
+    /**
+     * Returns the unfinished games of a player with an id less than the
+     * input id, newest first (see findHistoryBefore()).
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of active games with the input player
+     */
+    default List<Game> findActiveHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return GameArchive.merge(findActiveHistoryAsXBefore(player, gameId, page),
+                findActiveHistoryAsOBefore(player, gameId, page), true, page.getPageSize());
+    }
+
+    /**
+     * Returns the finished games of a player with an id less than the
+     * input id, newest first (see findHistoryBefore()).
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of finished games with the input player
+     */
+    default List<Game> findFinishedHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return GameArchive.merge(findFinishedHistoryAsXBefore(player, gameId, page),
+                findFinishedHistoryAsOBefore(player, gameId, page), true, page.getPageSize());
+    }
+
+    /**
+     * Returns the games a player played as X with an id less than the
+     * input id, newest first.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games with the input player as X
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerX = :player and g.gameId < :gameId " +
+           "order by g.gameId desc")
+    List<Game> findHistoryAsXBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                    Pageable page);
+
+    /**
+     * Returns the games a player played as O with an id less than the
+     * input id, newest first. Games against themselves are left to
+     * findHistoryAsXBefore(), so they are not returned twice.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of games with the input player as O
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerO = :player and g.playerX <> :player and g.gameId < :gameId " +
+           "order by g.gameId desc")
+    List<Game> findHistoryAsOBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                    Pageable page);
+
+    /**
+     * Returns the unfinished games a player plays as X with an id less
+     * than the input id, newest first.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of active games with the input player as X
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerX = :player and g.gameId < :gameId " +
+           "and g.gameover = false and g.draw = false " +
+           "order by g.gameId desc")
+    List<Game> findActiveHistoryAsXBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                          Pageable page);
+
+    /**
+     * Returns the unfinished games a player plays as O with an id less
+     * than the input id, newest first (see findHistoryAsOBefore()).
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of active games with the input player as O
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerO = :player and g.playerX <> :player and g.gameId < :gameId " +
+           "and g.gameover = false and g.draw = false " +
+           "order by g.gameId desc")
+    List<Game> findActiveHistoryAsOBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                          Pageable page);
+
+    /**
+     * Returns the finished games a player played as X with an id less
+     * than the input id, newest first.
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of finished games with the input player as X
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerX = :player and g.gameId < :gameId " +
+           "and (g.gameover = true or g.draw = true) " +
+           "order by g.gameId desc")
+    List<Game> findFinishedHistoryAsXBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                            Pageable page);
+
+    /**
+     * Returns the finished games a player played as O with an id less
+     * than the input id, newest first (see findHistoryAsOBefore()).
+     *
+     * @param player a player
+     * @param gameId the last game id seen by the caller
+     * @param page the number of games to return
+     * @return a list of finished games with the input player as O
+     */
+    @Query("select g from Game g join fetch g.playerX join fetch g.playerO " +
+           "where g.playerO = :player and g.playerX <> :player and g.gameId < :gameId " +
+           "and (g.gameover = true or g.draw = true) " +
+           "order by g.gameId desc")
+    List<Game> findFinishedHistoryAsOBefore(@Param("player") Player player, @Param("gameId") int gameId,
+                                            Pageable page);
+
+    /**
+     * Returns the ids of a page of games that finished before the input
+     * time, in id order.
+     *
+     * @param cutoff the latest finish time to return
+     * @param page the number of game ids to return
+     * @return a list of game ids
+     */
+    @Query("select g.gameId from Game g where g.finishedAt < :cutoff order by g.gameId")
+    List<Integer> findIdsFinishedBefore(@Param("cutoff") Instant cutoff, Pageable page);
+
+    /**
+     * Removes several games in a single delete.
+     *
+     * @param gameIds the game ids
+     * @return the number of games removed
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Game g where g.gameId in :gameIds")
+    int deleteByGameIds(@Param("gameIds") Collection<Integer> gameIds);
 }
@@ -0,0 +1,62 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.MoveEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A data layer for the append-only move log.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Repository
+public interface IMoveEventRepository extends JpaRepository<MoveEvent, Long>
+{
+    /**
+     * Returns the logged moves of a game in the order they were made.
+     *
+     * @param gameId the game id
+     * @return a list of moves
+     */
+    List<MoveEvent> findByGameIdOrderByPly(int gameId);
+
+    /**
+     * Returns the logged moves of several games, ordered by game and ply.
+     *
+     * @param gameIds the game ids
+     * @return a list of moves
+     */
+    List<MoveEvent> findByGameIdInOrderByGameIdAscPlyAsc(Collection<Integer> gameIds);
+
+    /**
+     * Returns finished games that have every move in the log, and
+     * can be compacted into snapshots.
+     *
+     * @param page the number of game ids to return
+     * @return a list of game ids
+     */
+    @Query("select e.gameId from MoveEvent e, Game g where g.gameId = e.gameId " +
+           "and (g.gameover = true or g.draw = true) " +
+           "group by e.gameId, g.turn having count(e) = g.turn")
+    List<Integer> findCompactableGameIds(Pageable page);
+
+    /**
+     * Removes the logged moves of several games.
+     *
+     * @param gameIds the game ids
+     * @return the number of moves removed
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from MoveEvent e where e.gameId in :gameIds")
+    int deleteByGameIds(@Param("gameIds") Collection<Integer> gameIds);
+}
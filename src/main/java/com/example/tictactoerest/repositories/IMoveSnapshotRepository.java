@@ -0,0 +1,16 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.MoveSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A data layer for the compacted moves of finished games.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Repository
+public interface IMoveSnapshotRepository extends JpaRepository<MoveSnapshot, Integer>
+{
+}
@@ -2,9 +2,15 @@ package com.example.tictactoerest.repositories;
 
 import com.example.tictactoerest.entities.Player;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A data layer for persisting Player objects.
@@ -22,4 +28,55 @@ public interface IPlayerRepository extends JpaRepository<Player, Integer>
      * @return a Player object wrapped in an Optional
      */
     Optional<Player> findByNameEquals(String name);
+
+    /**
+     * Returns the input names that are already in use, in a single query.
+     *
+     * @param names the player names to search for
+     * @return the names of saved players
+     */
+    @Query("select p.name from Player p where p.name in :names")
+    Set<String> findNamesIn(@Param("names") Collection<String> names);
+
+    /**
+     * Changes the name of a player in a single update, without reading
+     * the player first, so the stats of the player are not written back.
+     *
+     * @param playerId the id of the player
+     * @param name the new name
+     * @return the number of players updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Player p set p.name = :name where p.playerId = :playerId")
+    int rename(@Param("playerId") int playerId, @Param("name") String name);
+
+    /**
+     * Adds a win to one player and a loss to another in a single update,
+     * without reading the players first.
+     *
+     * @param winnerId the id of the player that won
+     * @param loserId the id of the player that lost
+     * @return the number of players updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Player p set " +
+           "p.wins = p.wins + case when p.playerId = :winnerId then 1 else 0 end, " +
+           "p.losses = p.losses + case when p.playerId = :loserId then 1 else 0 end " +
+           "where p.playerId in (:winnerId, :loserId)")
+    int recordWin(@Param("winnerId") int winnerId, @Param("loserId") int loserId);
+
+    /**
+     * Adds a draw to two players in a single update, without reading
+     * the players first.
+     *
+     * @param playerId the id of a player
+     * @param otherId the id of the other player
+     * @return the number of players updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Player p set p.draws = p.draws + 1 where p.playerId in (:playerId, :otherId)")
+    int recordDraw(@Param("playerId") int playerId, @Param("otherId") int otherId);
 }
@@ -0,0 +1,265 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.BitBoard;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.MoveEvent;
+import com.example.tictactoerest.entities.MoveSnapshot;
+import com.example.tictactoerest.views.MoveDelta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An append-only log of every move, in front of the move data layer.
+ * Moves are taken from the {@link MoveDelta} events published by
+ * GameService and inserted in batches:
+ *
+ * - every tictactoe.write-behind.flush-interval-ms milliseconds
+ * - when the application shuts down
+ *
+ * With tictactoe.write-behind.enabled=false every move is inserted
+ * immediately. Every tictactoe.move-log.compact-interval-ms milliseconds
+ * the moves of finished games are folded into one {@link MoveSnapshot}
+ * per game and removed from the log.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class MoveLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MoveLog.class);
+    private static final int COMPACT_BATCH_SIZE = 500;
+
+    private IMoveEventRepository eventRepo;
+    private IMoveSnapshotRepository snapshotRepo;
+    private EntityManager entityManager;
+    private boolean writeBehind;
+
+    //moves not yet inserted, in the order they were made
+    private final Queue<MoveEvent> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a log in front of the move data layers.
+     *
+     * @param eventRepo the move data layer
+     * @param snapshotRepo the compacted move data layer
+     * @param entityManager the persistence context, used to insert snapshots
+     * @param writeBehind false to insert every move immediately
+     */
+    public MoveLog(IMoveEventRepository eventRepo, IMoveSnapshotRepository snapshotRepo, EntityManager entityManager,
+                   @Value("${tictactoe.write-behind.enabled:true}") boolean writeBehind)
+    {
+        this.eventRepo = eventRepo;
+        this.snapshotRepo = snapshotRepo;
+        this.entityManager = entityManager;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Appends a move to the log.
+     *
+     * @param delta the move that was made
+     */
+    @EventListener
+    public void onMove(MoveDelta delta)
+    {
+        MoveEvent event = MoveEvent.builder()
+                .gameId(delta.getGameId())
+                .ply(delta.getTurn() - 1)
+                .playerId(delta.getPlayerId())
+                .cell(delta.getRow() * BitBoard.COLS + delta.getCol())
+                .build();
+
+        if (writeBehind)
+        {
+            pending.add(event);
+        }
+        else
+        {
+            eventRepo.save(event);
+        }
+    }
+
+    /**
+     * Returns every logged move of a game in the order they were made,
+     * from its snapshot if the game was compacted. The log stops at the
+     * first missing ply (e.g. moves made before the log existed).
+     *
+     * @param game the game
+     * @return a list of moves
+     */
+    public List<MoveEvent> history(Game game)
+    {
+        //each step reads the state the next one can replace, so a concurrent flush() or compact()
+        //never hides a move: flush() inserts moves before it drops them from pending, and compact()
+        //adds the snapshot and deletes the moves in one transaction
+        List<MoveEvent> queued = new ArrayList<>(pending);
+        List<MoveEvent> moves = new ArrayList<>(eventRepo.findByGameIdOrderByPly(game.getGameId()));
+        Optional<MoveSnapshot> snapshot = snapshotRepo.findById(game.getGameId());
+        if (snapshot.isPresent())
+        {
+            return expand(snapshot.get(), game);
+        }
+
+        //moves both inserted and still queued are skipped, as their ply is already taken
+        for (MoveEvent event : queued)
+        {
+            if (event.getGameId() == game.getGameId() && event.getPly() == moves.size())
+            {
+                moves.add(event);
+            }
+        }
+
+        for (int ply = 0; ply < moves.size(); ply++)
+        {
+            if (moves.get(ply).getPly() != ply)
+            {
+                return moves.subList(0, ply);
+            }
+        }
+        return moves;
+    }
+
+    //rebuilds the moves of a compacted game, with the players of the game
+    private static List<MoveEvent> expand(MoveSnapshot snapshot, Game game)
+    {
+        List<MoveEvent> moves = new ArrayList<>(snapshot.getPlies());
+        for (int ply = 0; ply < snapshot.getPlies(); ply++)
+        {
+            moves.add(MoveEvent.builder()
+                    .gameId(game.getGameId())
+                    .ply(ply)
+                    .playerId(ply % 2 == 0 ? game.getPlayerX().getPlayerId() : game.getPlayerO().getPlayerId())
+                    .cell(snapshot.cellAt(ply))
+                    .build());
+        }
+        return moves;
+    }
+
+    /**
+     * Inserts all moves appended since the last flush in a single batch.
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.write-behind.flush-interval-ms:1000}")
+    public synchronized void flush()
+    {
+        //moves stay pending until inserted, so history() always finds them
+        List<MoveEvent> batch = new ArrayList<>(pending);
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            eventRepo.saveAll(batch);
+        }
+        catch (DataIntegrityViolationException ex)
+        {
+            saveEach(batch);
+        }
+        for (int i = 0; i < batch.size(); i++)
+        {
+            pending.poll();
+        }
+    }
+
+    //inserts moves one at a time, so a rejected move does not hold back the others
+    private void saveEach(List<MoveEvent> batch)
+    {
+        for (MoveEvent event : batch)
+        {
+            try
+            {
+                eventRepo.save(event);
+            }
+            catch (DataIntegrityViolationException ex)
+            {
+                LOG.warn("Move {} of game {} is already logged, skipping it", event.getPly(), event.getGameId());
+            }
+        }
+    }
+
+    /**
+     * Folds the logged moves of finished games into one snapshot per
+     * game and removes them from the log.
+     *
+     * @return the number of games compacted
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.move-log.compact-interval-ms:60000}")
+    @Transactional
+    public int compact()
+    {
+        int compacted = 0;
+        List<Integer> gameIds;
+        while (!(gameIds = eventRepo.findCompactableGameIds(PageRequest.of(0, COMPACT_BATCH_SIZE))).isEmpty())
+        {
+            List<MoveSnapshot> snapshots = new ArrayList<>(gameIds.size());
+            MoveSnapshot snapshot = null;
+            for (MoveEvent move : eventRepo.findByGameIdInOrderByGameIdAscPlyAsc(gameIds))
+            {
+                if (snapshot == null || snapshot.getGameId() != move.getGameId())
+                {
+                    snapshot = new MoveSnapshot(move.getGameId(), 0, 0L);
+                    snapshots.add(snapshot);
+                }
+                snapshot.setCells(snapshot.getCells() | (long) move.getCell() << (move.getPly() * MoveSnapshot.BITS_PER_PLY));
+                snapshot.setPlies(snapshot.getPlies() + 1);
+            }
+
+            //ids are assigned, so persist() avoids the select that merge() would make
+            for (MoveSnapshot complete : snapshots)
+            {
+                entityManager.persist(complete);
+            }
+            eventRepo.deleteByGameIds(gameIds);
+            entityManager.flush();
+            entityManager.clear();
+            compacted += gameIds.size();
+        }
+        return compacted;
+    }
+
+    /**
+     * Removes the logged moves and snapshot of a deleted game.
+     *
+     * @param gameId the game id
+     */
+    public synchronized void deleteGame(int gameId)
+    {
+        pending.removeIf(event -> event.getGameId() == gameId);
+        eventRepo.deleteByGameIds(List.of(gameId));
+        if (snapshotRepo.existsById(gameId))
+        {
+            snapshotRepo.deleteById(gameId);
+        }
+    }
+
+    /**
+     * Inserts any remaining moves before the data layer is closed. This
+     * runs when the context starts closing rather than in a destroy
+     * method, as the repositories are lazy proxies and may already be
+     * destroyed by then.
+     *
+     * @param event the context closing
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void close(ContextClosedEvent event)
+    {
+        flush();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.tictactoerest.repositories;
+
+import com.example.tictactoerest.entities.Player;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * A bounded cache of players by id and by name, in front of the player
+ * data layer. Players are cached when they are first read and evicted,
+ * least recently used first, once there are more than
+ * tictactoe.player-cache.size of them.
+ *
+ * The cache does not see writes made directly to the data layer, so
+ * callers that save, rename or delete a player, or change their stats,
+ * must call put() or evict() once the change is saved. Names that are
+ * not in use are not cached, so players saved in bulk (e.g. imports)
+ * do not need to be added.
+ *
+ * Players are copied in and out of the cache, so callers may change
+ * the players they are given.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class PlayerCache
+{
+    private IPlayerRepository playerRepo;
+
+    private final Cache<Integer, Player> players;
+
+    //names point at ids, so a player is only cached (and evicted) once
+    private final Cache<String, Integer> ids;
+
+    /**
+     * Creates a cache in front of the player data layer.
+     *
+     * @param playerRepo the player data layer
+     * @param registry reports hits, misses and evictions as cache.* metrics
+     * @param size the most players kept in the cache
+     */
+    public PlayerCache(IPlayerRepository playerRepo, MeterRegistry registry,
+                       @Value("${tictactoe.player-cache.size:10000}") long size)
+    {
+        this.playerRepo = playerRepo;
+        this.players = Caffeine.newBuilder().maximumSize(size).recordStats().build();
+        this.ids = Caffeine.newBuilder().maximumSize(size).recordStats().build();
+        CaffeineCacheMetrics.monitor(registry, players, "players");
+        CaffeineCacheMetrics.monitor(registry, ids, "player-names");
+    }
+
+    /**
+     * Returns a player by id, from the cache if possible.
+     *
+     * @param playerId the player id
+     * @return a copy of the player, or empty if there is no such player
+     */
+    public Optional<Player> findById(int playerId)
+    {
+        //missing players are not cached, the loader returning null leaves no entry
+        Player player = players.get(playerId, id -> playerRepo.findById(id).orElse(null));
+        return Optional.ofNullable(player).map(Player::copy);
+    }
+
+    /**
+     * Returns a player by name, from the cache if possible.
+     *
+     * @param name the player name
+     * @return a copy of the player, or empty if no player has the name
+     */
+    public Optional<Player> findByName(String name)
+    {
+        Integer playerId = ids.getIfPresent(name);
+        if (playerId != null)
+        {
+            //a renamed or deleted player leaves its old name behind
+            Optional<Player> player = findById(playerId);
+            if (player.isPresent() && player.get().getName().equals(name))
+            {
+                return player;
+            }
+            ids.invalidate(name);
+        }
+
+        Optional<Player> player = playerRepo.findByNameEquals(name);
+        player.ifPresent(this::put);
+        return player;
+    }
+
+    /**
+     * Caches a player that was just saved, replacing any cached copy.
+     *
+     * @param player the saved player
+     */
+    public void put(Player player)
+    {
+        players.put(player.getPlayerId(), player.copy());
+        ids.put(player.getName(), player.getPlayerId());
+    }
+
+    /**
+     * Removes a player from the cache, so the next read loads it from the
+     * data layer. Call this after the player is deleted or its stats are
+     * changed.
+     *
+     * @param playerId the player id
+     */
+    public void evict(int playerId)
+    {
+        players.invalidate(playerId);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.tictactoerest.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call to the game and player data layers as
+ * tictactoe.repository, tagged by repository, method and exception
+ * ("none" if the call returned). Methods that return a stream are timed
+ * until the stream is returned, not until it is consumed.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Aspect
+@Component
+public class RepositoryMetrics
+{
+    private MeterRegistry registry;
+
+    /**
+     * Creates the aspect.
+     *
+     * @param registry the meter registry
+     */
+    public RepositoryMetrics(MeterRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * Times a call to a data layer.
+     *
+     * @param call the repository method call
+     * @throws Throwable whatever the method throws
+     * @return the result of the method
+     */
+    @Around("target(com.example.tictactoerest.repositories.IGameRepository) " +
+            "|| target(com.example.tictactoerest.repositories.IPlayerRepository)")
+    public Object time(ProceedingJoinPoint call) throws Throwable
+    {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try
+        {
+            return call.proceed();
+        }
+        catch (Throwable ex)
+        {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        }
+        finally
+        {
+            sample.stop(Timer.builder("tictactoe.repository")
+                    .description("Calls to the game and player data layers")
+                    .tag("repository", call.getTarget() instanceof IGameRepository ? "game" : "player")
+                    .tag("method", call.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
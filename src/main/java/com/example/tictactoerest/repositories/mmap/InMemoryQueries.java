@@ -0,0 +1,235 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.NullValueInNestedPathException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.Entity;
+import javax.persistence.Transient;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Sorting, paging and query-by-example over entities held in memory,
+ * for the memory-mapped repositories. Properties are read from fields,
+ * the same attributes the JPA queries use, and nested paths such as
+ * "playerX.name" are supported.
+ *
+ * Example probes follow Spring Data JPA: null values are ignored unless
+ * the matcher includes them, primitive fields always take part (so
+ * ignore the ones that should not), and entities are matched field by
+ * field instead of with equals().
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+final class InMemoryQueries
+{
+    private InMemoryQueries()
+    {
+    }
+
+    /**
+     * Returns a comparator for the orders of a sort.
+     *
+     * @param sort the sort, possibly unsorted
+     * @param <T> the entity type
+     * @return a comparator, which finds every entity equal if unsorted
+     */
+    static <T> Comparator<T> comparator(Sort sort)
+    {
+        Comparator<T> comparator = (first, second) -> 0;
+        for (Sort.Order order : sort)
+        {
+            comparator = comparator.thenComparing(compareBy(order));
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Comparator<T> compareBy(Sort.Order order)
+    {
+        //PostgreSQL puts nulls last when ascending and first when descending
+        boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NATIVE
+                ? order.isDescending()
+                : order.getNullHandling() == Sort.NullHandling.NULLS_FIRST;
+        return (first, second) -> {
+            Object a = property(first, order.getProperty());
+            Object b = property(second, order.getProperty());
+            if (a == null || b == null)
+            {
+                return a == b ? 0 : (a == null) == nullsFirst ? -1 : 1;
+            }
+
+            int compared;
+            if (order.isIgnoreCase() && a instanceof String)
+            {
+                compared = ((String) a).compareToIgnoreCase((String) b);
+            }
+            else
+            {
+                compared = ((Comparable) a).compareTo(b);
+            }
+            return order.isAscending() ? compared : -compared;
+        };
+    }
+
+    /**
+     * Returns a page of sorted entities.
+     *
+     * @param all every entity, which is sorted in place
+     * @param pageable the page and sort, possibly unpaged
+     * @param <T> the entity type
+     * @return the page, with the total number of entities
+     */
+    static <T> Page<T> page(List<T> all, Pageable pageable)
+    {
+        all.sort(comparator(pageable.getSort()));
+        if (pageable.isUnpaged())
+        {
+            return new PageImpl<>(all, pageable, all.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(new ArrayList<>(all.subList(from, to)), pageable, all.size());
+    }
+
+    /**
+     * Returns the entities that match an example, as instances of its
+     * probe type.
+     *
+     * @param all the entities to search
+     * @param example the probe and matcher
+     * @param <T> the entity type
+     * @param <S> the probe type
+     * @return the matching entities, in the input order
+     */
+    @SuppressWarnings("unchecked")
+    static <T, S extends T> List<S> matching(List<T> all, Example<S> example)
+    {
+        ExampleMatcherAccessor matcher = new ExampleMatcherAccessor(example.getMatcher());
+        boolean any = example.getMatcher().isAnyMatching();
+        List<S> matches = new ArrayList<>();
+        for (T entity : all)
+        {
+            if (example.getProbeType().isInstance(entity) &&
+                matches(example.getProbe(), entity, "", matcher, any))
+            {
+                matches.add((S) entity);
+            }
+        }
+        return matches;
+    }
+
+    //compares the fields of a probe with the same fields of an entity, with their paths under a prefix
+    private static boolean matches(Object probe, Object entity, String prefix, ExampleMatcherAccessor matcher, boolean any)
+    {
+        List<Boolean> results = new ArrayList<>();
+        ReflectionUtils.doWithFields(probe.getClass(), field -> {
+            String path = prefix + field.getName();
+            if (matcher.isIgnoredPath(path))
+            {
+                return;
+            }
+
+            Object expected = matcher.getValueTransformerForPath(path)
+                    .apply(Optional.ofNullable(read(field, probe))).orElse(null);
+            Object actual = read(field, entity);
+            if (expected == null)
+            {
+                if (matcher.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE)
+                {
+                    results.add(actual == null);
+                }
+            }
+            else if (actual == null)
+            {
+                results.add(false);
+            }
+            else if (expected.getClass().isAnnotationPresent(Entity.class))
+            {
+                results.add(matches(expected, actual, path + ".", matcher, false));
+            }
+            else if (expected instanceof String)
+            {
+                results.add(matches((String) expected, (String) actual, path, matcher));
+            }
+            else
+            {
+                results.add(ObjectUtils.nullSafeEquals(expected, actual));
+            }
+        }, InMemoryQueries::isAttribute);
+
+        //a probe with no values matches everything, the same as an empty where clause
+        return results.isEmpty() || (any ? results.contains(true) : !results.contains(false));
+    }
+
+    private static boolean matches(String value, String actual, String path, ExampleMatcherAccessor matcher)
+    {
+        boolean ignoreCase = matcher.isIgnoreCaseForPath(path);
+        ExampleMatcher.StringMatcher stringMatcher = matcher.getStringMatcherForPath(path);
+        if (stringMatcher == ExampleMatcher.StringMatcher.REGEX)
+        {
+            return Pattern.compile(value, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0)
+                    .matcher(actual).matches();
+        }
+        else if (ignoreCase)
+        {
+            value = value.toLowerCase(Locale.ROOT);
+            actual = actual.toLowerCase(Locale.ROOT);
+        }
+
+        switch (stringMatcher)
+        {
+            case STARTING:
+                return actual.startsWith(value);
+            case ENDING:
+                return actual.endsWith(value);
+            case CONTAINING:
+                return actual.contains(value);
+            default:
+                return actual.equals(value);
+        }
+    }
+
+    //persistent fields, the attributes JPA would query
+    private static boolean isAttribute(Field field)
+    {
+        return !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) &&
+               !field.isAnnotationPresent(Transient.class);
+    }
+
+    private static Object read(Field field, Object target)
+    {
+        ReflectionUtils.makeAccessible(field);
+        return ReflectionUtils.getField(field, target);
+    }
+
+    //reads a field, or a path of fields through nested entities (null if one of them is null)
+    private static Object property(Object entity, String path)
+    {
+        try
+        {
+            return new DirectFieldAccessor(entity).getPropertyValue(path);
+        }
+        catch (NullValueInNestedPathException ex)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.entities.BitBoard;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.repositories.IGameRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A data layer for Game objects, saved as fixed-size records in a
+ * memory-mapped file:
+ *
+ * [playerX id][playerO id][packed board][turn][flags][version]
+ *
+ * The games of each player are indexed in memory when the file is
+ * opened. Players are read from the player data layer; this data layer
+ * may lock the player data layer, but never the other way around.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class MappedGameRepository extends MappedRepository<Game> implements IGameRepository
+{
+    private static final int PAYLOAD_SIZE = 6 * 4;
+    private static final int GAMEOVER = 1;
+    private static final int DRAW = 2;
+
+    private final MappedPlayerRepository players;
+
+    //game ids of each player in id order, and of their unfinished games
+    private final ConcurrentMap<Integer, NavigableSet<Integer>> gamesByPlayer = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<Integer>> activeByPlayer = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the game file, or creates it if it does not exist.
+     *
+     * @param path the file
+     * @param sync true to force every write to disk
+     * @param players the player data layer
+     */
+    public MappedGameRepository(Path path, boolean sync, MappedPlayerRepository players)
+    {
+        super(new RecordFile(path, PAYLOAD_SIZE, sync));
+        this.players = players;
+        int slots = file.slots();
+        for (int slot = 0; slot < slots; slot++)
+        {
+            ByteBuffer record = file.read(slot);
+            if (record != null)
+            {
+                index(idOfSlot(slot), record.getInt(0), record.getInt(4), record.getInt(16));
+            }
+        }
+        players.setReferenceCheck(this::hasGames);
+    }
+
+    //lock free, so the player data layer can call it
+    private boolean hasGames(int playerId)
+    {
+        Set<Integer> games = gamesByPlayer.get(playerId);
+        return games != null && !games.isEmpty();
+    }
+
+    private void index(int gameId, int playerXId, int playerOId, int flags)
+    {
+        for (int playerId : new int[]{playerXId, playerOId})
+        {
+            gamesByPlayer.computeIfAbsent(playerId, id -> new ConcurrentSkipListSet<>()).add(gameId);
+            Set<Integer> active = activeByPlayer.computeIfAbsent(playerId, id -> ConcurrentHashMap.newKeySet());
+            if (flags == 0)
+            {
+                active.add(gameId);
+            }
+            else
+            {
+                active.remove(gameId);
+            }
+        }
+    }
+
+    private void unindex(int gameId, int playerXId, int playerOId)
+    {
+        for (int playerId : new int[]{playerXId, playerOId})
+        {
+            Set<Integer> games = gamesByPlayer.get(playerId);
+            if (games != null)
+            {
+                games.remove(gameId);
+            }
+            Set<Integer> active = activeByPlayer.get(playerId);
+            if (active != null)
+            {
+                active.remove(gameId);
+            }
+        }
+    }
+
+    @Override
+    protected synchronized Game read(int id)
+    {
+        ByteBuffer record = file.read(slotOf(id));
+        if (record == null)
+        {
+            return null;
+        }
+
+        int flags = record.getInt(16);
+        return Game.builder()
+                .gameId(id)
+                .playerX(players.findById(record.getInt(0)).orElse(null))
+                .playerO(players.findById(record.getInt(4)).orElse(null))
+                .board(BitBoard.unpack(record.getInt(8)))
+                .turn(record.getInt(12))
+                .gameover((flags & GAMEOVER) != 0)
+                .draw((flags & DRAW) != 0)
+                .version(record.getInt(20))
+                .build();
+    }
+
+    @Override
+    protected int idOf(Game game)
+    {
+        return game.getGameId();
+    }
+
+    private static int flagsOf(Game game)
+    {
+        return (game.isGameOver() ? GAMEOVER : 0) | (game.isDraw() ? DRAW : 0);
+    }
+
+    /**
+     * Saves a game. A new game (id 0) is given the next id, other games
+     * must have the version that is saved.
+     *
+     * @param game the game
+     * @throws ObjectOptimisticLockingFailureException if the game was changed since it was read
+     * @return the saved game, with the new version
+     */
+    @Override
+    public synchronized <S extends Game> S save(S game)
+    {
+        checkVersion(game);
+        return write(game);
+    }
+
+    /**
+     * Saves games, checking the version of every game before any of
+     * them is written.
+     *
+     * @param games the games
+     * @throws ObjectOptimisticLockingFailureException if a game was changed since it was read
+     * @return the saved games, with the new versions
+     */
+    @Override
+    public synchronized <S extends Game> List<S> saveAll(Iterable<S> games)
+    {
+        for (S game : games)
+        {
+            checkVersion(game);
+        }
+
+        List<S> saved = new ArrayList<>();
+        for (S game : games)
+        {
+            saved.add(write(game));
+        }
+        return saved;
+    }
+
+    private void checkVersion(Game game)
+    {
+        if (game.getGameId() == 0)
+        {
+            return;
+        }
+
+        ByteBuffer record = file.read(slotOf(game.getGameId()));
+        if (record == null || record.getInt(20) != game.getVersion())
+        {
+            throw new ObjectOptimisticLockingFailureException(Game.class, game.getGameId());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S extends Game> S write(S game)
+    {
+        boolean created = game.getGameId() == 0;
+        int version = created ? 0 : game.getVersion() + 1;
+        ByteBuffer record = ByteBuffer.allocate(PAYLOAD_SIZE)
+                .putInt(game.getPlayerX().getPlayerId())
+                .putInt(game.getPlayerO().getPlayerId())
+                .putInt(game.getBoard().pack())
+                .putInt(game.getTurn())
+                .putInt(flagsOf(game))
+                .putInt(version)
+                .flip();
+
+        S saved;
+        if (created)
+        {
+            game.setGameId(idOfSlot(file.append(record)));
+            game.setVersion(version);
+            saved = game;
+        }
+        else
+        {
+            file.write(slotOf(game.getGameId()), record);
+            //like a merge, the saved copy has the new version and the input is unchanged
+            saved = (S) game.copy();
+            saved.setVersion(version);
+        }
+        index(saved.getGameId(), saved.getPlayerX().getPlayerId(), saved.getPlayerO().getPlayerId(), flagsOf(saved));
+        return saved;
+    }
+
+    @Override
+    public synchronized void deleteById(Integer gameId)
+    {
+        ByteBuffer record = file.read(slotOf(gameId));
+        super.deleteById(gameId);
+        unindex(gameId, record.getInt(0), record.getInt(4));
+    }
+
+    @Override
+    public List<Game> findAllByPlayerXEqualsOrPlayerOEquals(Player playerX, Player playerO)
+    {
+        NavigableSet<Integer> gameIds = new TreeSet<>(gamesOf(playerX.getPlayerId()));
+        gameIds.addAll(gamesOf(playerO.getPlayerId()));
+        return findAllById(gameIds);
+    }
+
+    @Override
+    public boolean existsByPlayerXAndGameoverFalseAndDrawFalse(Player player)
+    {
+        return hasActiveGame(player, true);
+    }
+
+    @Override
+    public boolean existsByPlayerOAndGameoverFalseAndDrawFalse(Player player)
+    {
+        return hasActiveGame(player, false);
+    }
+
+    //a player is in at most a few active games, so each is read to find its side
+    private boolean hasActiveGame(Player player, boolean asX)
+    {
+        Set<Integer> active = activeByPlayer.get(player.getPlayerId());
+        if (active == null)
+        {
+            return false;
+        }
+
+        for (Integer gameId : active)
+        {
+            Game game = read(gameId);
+            if (game != null && (asX ? game.getPlayerX() : game.getPlayerO()).getPlayerId() == player.getPlayerId())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Optional<Integer> findTurnById(int gameId)
+    {
+        ByteBuffer record = file.read(slotOf(gameId));
+        return record == null ? Optional.empty() : Optional.of(record.getInt(12));
+    }
+
+    @Override
+    public List<MatchUp> findActiveMatchUps(Collection<Integer> playerIds)
+    {
+        Set<Integer> gameIds = new TreeSet<>();
+        for (Integer playerId : playerIds)
+        {
+            Set<Integer> active = activeByPlayer.get(playerId);
+            if (active != null)
+            {
+                gameIds.addAll(active);
+            }
+        }
+
+        List<MatchUp> matchUps = new ArrayList<>(gameIds.size());
+        for (Integer gameId : gameIds)
+        {
+            ByteBuffer record = file.read(slotOf(gameId));
+            if (record != null)
+            {
+                matchUps.add(new MatchUp(record.getInt(0), record.getInt(4)));
+            }
+        }
+        return matchUps;
+    }
+
+    @Override
+    public List<Game> findPageAfter(int gameId, Pageable page)
+    {
+        List<Game> games = new ArrayList<>(page.getPageSize());
+        int slots = file.slots();
+        for (int slot = Math.max(0, gameId); slot < slots && games.size() < page.getPageSize(); slot++)
+        {
+            Game game = read(idOfSlot(slot));
+            if (game != null)
+            {
+                games.add(game);
+            }
+        }
+        return games;
+    }
+
+    @Override
+    public List<Integer> findIdsWithTokenAfter(int token, int gameId, Pageable page)
+    {
+        List<Integer> gameIds = new ArrayList<>(page.getPageSize());
+        int slots = file.slots();
+        for (int slot = Math.max(0, gameId); slot < slots && gameIds.size() < page.getPageSize(); slot++)
+        {
+            ByteBuffer record = file.read(slot);
+            if (record != null && (record.getInt(8) & token) != 0)
+            {
+                gameIds.add(idOfSlot(slot));
+            }
+        }
+        return gameIds;
+    }
+
+    @Override
+    public List<Game> findAllWithPlayersById(Collection<Integer> gameIds)
+    {
+        return findAllById(new TreeSet<>(gameIds));
+    }
+
+    /**
+     * Returns all games in id order as a stream that reads records as
+     * it is consumed.
+     *
+     * @return a stream of games
+     */
+    @Override
+    public Stream<Game> streamAll()
+    {
+        return IntStream.range(0, file.slots())
+                .mapToObj(slot -> read(idOfSlot(slot)))
+                .filter(Objects::nonNull);
+    }
+
+    //the player index covers both columns, so the whole history is read in one pass
+    @Override
+    public List<Game> findHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, false, game -> true);
+    }
+
+    @Override
+    public List<Game> findActiveHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, true, game -> true);
+    }
+
+    @Override
+    public List<Game> findFinishedHistoryBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, GAMEOVER | DRAW, true, game -> true);
+    }
+
+    @Override
+    public List<Game> findHistoryAsXBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, false, game -> isX(game, player));
+    }
+
+    @Override
+    public List<Game> findHistoryAsOBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, false, game -> !isX(game, player));
+    }
+
+    @Override
+    public List<Game> findActiveHistoryAsXBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, true, game -> isX(game, player));
+    }
+
+    @Override
+    public List<Game> findActiveHistoryAsOBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, 0, true, game -> !isX(game, player));
+    }
+
+    @Override
+    public List<Game> findFinishedHistoryAsXBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, GAMEOVER | DRAW, true, game -> isX(game, player));
+    }
+
+    @Override
+    public List<Game> findFinishedHistoryAsOBefore(Player player, int gameId, Pageable page)
+    {
+        return history(player, gameId, page, GAMEOVER | DRAW, true, game -> !isX(game, player));
+    }
+
+    //games against themselves count as X only, as in the JPA queries
+    private static boolean isX(Game game, Player player)
+    {
+        return game.getPlayerX().getPlayerId() == player.getPlayerId();
+    }
+
+    //the games of a player before a game id, newest first, optionally only
+    //the active games (flags 0) or the finished games (any flag set), on one side
+    private List<Game> history(Player player, int gameId, Pageable page, int flags, boolean filter,
+                               Predicate<Game> side)
+    {
+        List<Game> games = new ArrayList<>(page.getPageSize());
+        Iterator<Integer> gameIds = gamesOf(player.getPlayerId()).headSet(gameId, false).descendingIterator();
+        while (gameIds.hasNext() && games.size() < page.getPageSize())
+        {
+            Game game = read(gameIds.next());
+            if (game == null || !side.test(game))
+            {
+                continue;
+            }
+
+            int gameFlags = flagsOf(game);
+            if (!filter || (flags == 0 ? gameFlags == 0 : (gameFlags & flags) != 0))
+            {
+                games.add(game);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Finish times are not kept in the game records, so no game is ever
+     * found. The mmap profile sets tictactoe.archive.enabled=false, so
+     * this is not called and finished games stay in the game file.
+     *
+     * @param cutoff the latest finish time to return
+     * @param page the number of game ids to return
+     * @return an empty list
+     */
+    @Override
+    public List<Integer> findIdsFinishedBefore(Instant cutoff, Pageable page)
+    {
+        return List.of();
+    }
+
+    @Override
+    public synchronized int deleteByGameIds(Collection<Integer> gameIds)
+    {
+        int deleted = 0;
+        for (Integer gameId : gameIds)
+        {
+            if (file.isLive(slotOf(gameId)))
+            {
+                deleteById(gameId);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private NavigableSet<Integer> gamesOf(int playerId)
+    {
+        return gamesByPlayer.getOrDefault(playerId, new TreeSet<>());
+    }
+}
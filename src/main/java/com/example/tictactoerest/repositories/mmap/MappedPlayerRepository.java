@@ -0,0 +1,283 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntPredicate;
+
+/**
+ * A data layer for Player objects, saved as fixed-size records in a
+ * memory-mapped file:
+ *
+ * [wins][losses][draws][name length][name, up to 256 UTF-8 bytes]
+ *
+ * Names are unique, and are indexed in memory when the file is opened.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class MappedPlayerRepository extends MappedRepository<Player> implements IPlayerRepository
+{
+    private static final int NAME_BYTES = 256;
+    private static final int PAYLOAD_SIZE = 4 * 4 + NAME_BYTES;
+
+    //player ids by name
+    private final ConcurrentMap<String, Integer> names = new ConcurrentHashMap<>();
+
+    //true if a player is in a saved game, so it cannot be deleted
+    private volatile IntPredicate inGame = playerId -> false;
+
+    /**
+     * Opens the player file, or creates it if it does not exist.
+     *
+     * @param path the file
+     * @param sync true to force every write to disk
+     */
+    public MappedPlayerRepository(Path path, boolean sync)
+    {
+        super(new RecordFile(path, PAYLOAD_SIZE, sync));
+        for (Player player : findAll())
+        {
+            index(player);
+        }
+    }
+
+    /**
+     * Sets the check used to refuse deleting a player that is in a game.
+     * The check must not lock the game data layer.
+     *
+     * @param inGame returns true if a player id is in a saved game
+     */
+    void setReferenceCheck(IntPredicate inGame)
+    {
+        this.inGame = inGame;
+    }
+
+    @Override
+    protected synchronized Player read(int id)
+    {
+        ByteBuffer record = file.read(slotOf(id));
+        if (record == null)
+        {
+            return null;
+        }
+
+        int wins = record.getInt();
+        int losses = record.getInt();
+        int draws = record.getInt();
+        int nameLength = record.getInt();
+        String name = null;
+        if (nameLength >= 0)
+        {
+            byte[] bytes = new byte[nameLength];
+            record.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Player(id, name, wins, losses, draws);
+    }
+
+    @Override
+    protected int idOf(Player player)
+    {
+        return player.getPlayerId();
+    }
+
+    private static ByteBuffer write(Player player)
+    {
+        ByteBuffer record = ByteBuffer.allocate(PAYLOAD_SIZE);
+        record.putInt(player.getWins());
+        record.putInt(player.getLosses());
+        record.putInt(player.getDraws());
+        if (player.getName() == null)
+        {
+            record.putInt(-1);
+        }
+        else
+        {
+            byte[] bytes = player.getName().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > NAME_BYTES)
+            {
+                throw new DataIntegrityViolationException(String.format("Player names are limited to %s bytes", NAME_BYTES));
+            }
+            record.putInt(bytes.length);
+            record.put(bytes);
+        }
+        return record.flip();
+    }
+
+    private void index(Player player)
+    {
+        if (player.getName() != null)
+        {
+            names.put(player.getName(), player.getPlayerId());
+        }
+    }
+
+    /**
+     * Saves a player. A new player (id 0) is given the next id.
+     *
+     * @param player the player
+     * @return the saved player
+     */
+    @Override
+    public synchronized <S extends Player> S save(S player)
+    {
+        checkName(player);
+        ByteBuffer record = write(player);
+        if (player.getPlayerId() == 0)
+        {
+            player.setPlayerId(idOfSlot(file.append(record)));
+            index(player);
+            return player;
+        }
+
+        Player saved = read(player.getPlayerId());
+        if (saved != null && saved.getName() != null && !saved.getName().equals(player.getName()))
+        {
+            names.remove(saved.getName(), saved.getPlayerId());
+        }
+        file.write(slotOf(player.getPlayerId()), record);
+        index(player);
+        return player;
+    }
+
+    /**
+     * Saves players, or none of them if any name is already in use.
+     *
+     * @param players the players to save
+     * @return the saved players
+     */
+    @Override
+    public synchronized <S extends Player> List<S> saveAll(Iterable<S> players)
+    {
+        Set<String> batch = new HashSet<>();
+        for (S player : players)
+        {
+            checkName(player);
+            if (player.getName() != null && !batch.add(player.getName()))
+            {
+                throw new DataIntegrityViolationException(String.format("Name %s is saved twice", player.getName()));
+            }
+        }
+        return super.saveAll(players);
+    }
+
+    //names are unique, the same as the unique index on the player table
+    private void checkName(Player player)
+    {
+        Integer owner = player.getName() == null ? null : names.get(player.getName());
+        if (owner != null && owner != player.getPlayerId())
+        {
+            throw new DataIntegrityViolationException(String.format("Name %s is in use", player.getName()));
+        }
+    }
+
+    @Override
+    public synchronized void deleteById(Integer playerId)
+    {
+        if (inGame.test(playerId))
+        {
+            throw new DataIntegrityViolationException(String.format("Player %s is in a saved game", playerId));
+        }
+
+        Player saved = read(playerId);
+        super.deleteById(playerId);
+        if (saved.getName() != null)
+        {
+            names.remove(saved.getName(), playerId);
+        }
+    }
+
+    @Override
+    public Optional<Player> findByNameEquals(String name)
+    {
+        Integer playerId = names.get(name);
+        return playerId == null ? Optional.empty() : findById(playerId);
+    }
+
+    @Override
+    public Set<String> findNamesIn(Collection<String> candidates)
+    {
+        Set<String> taken = new HashSet<>();
+        for (String name : candidates)
+        {
+            if (names.containsKey(name))
+            {
+                taken.add(name);
+            }
+        }
+        return taken;
+    }
+
+    @Override
+    public synchronized int rename(int playerId, String name)
+    {
+        Player player = read(playerId);
+        if (player == null)
+        {
+            return 0;
+        }
+
+        String oldName = player.getName();
+        player.setName(name);
+        checkName(player);
+        ByteBuffer record = write(player);
+        if (oldName != null)
+        {
+            names.remove(oldName, playerId);
+        }
+        file.write(slotOf(playerId), record);
+        index(player);
+        return 1;
+    }
+
+    @Override
+    public synchronized int recordWin(int winnerId, int loserId)
+    {
+        int updated = 0;
+        Player winner = read(winnerId);
+        if (winner != null)
+        {
+            winner.win();
+            file.write(slotOf(winnerId), write(winner));
+            updated++;
+        }
+
+        Player loser = read(loserId);
+        if (loser != null)
+        {
+            loser.lose();
+            file.write(slotOf(loserId), write(loser));
+            updated++;
+        }
+        return updated;
+    }
+
+    @Override
+    public synchronized int recordDraw(int playerId, int otherId)
+    {
+        int updated = 0;
+        for (int id : new int[]{playerId, otherId})
+        {
+            Player player = read(id);
+            if (player != null)
+            {
+                player.draw();
+                file.write(slotOf(id), write(player));
+                updated++;
+            }
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The parts of a JpaRepository shared by the memory-mapped repositories.
+ * Entity ids are record slots plus one. Sorting, paging and
+ * query-by-example read every record and are done in memory (see
+ * {@link InMemoryQueries}), so they are meant for small files and tools
+ * rather than the api.
+ *
+ * @param <T> the entity type
+ * @author Josh Archer
+ * @version 1.0
+ */
+abstract class MappedRepository<T> implements JpaRepository<T, Integer>, Closeable
+{
+    protected final RecordFile file;
+
+    /**
+     * Creates a repository over a record file.
+     *
+     * @param file the records
+     */
+    protected MappedRepository(RecordFile file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the entity with the input id.
+     *
+     * @param id the entity id
+     * @return the entity, or null if there is none
+     */
+    protected abstract T read(int id);
+
+    /**
+     * Returns the id of an entity.
+     *
+     * @param entity the entity
+     * @return the id, 0 if the entity has not been saved
+     */
+    protected abstract int idOf(T entity);
+
+    protected static int slotOf(int id)
+    {
+        return id - 1;
+    }
+
+    protected static int idOfSlot(int slot)
+    {
+        return slot + 1;
+    }
+
+    @Override
+    public Optional<T> findById(Integer id)
+    {
+        return Optional.ofNullable(read(id));
+    }
+
+    @Override
+    public boolean existsById(Integer id)
+    {
+        return file.isLive(slotOf(id));
+    }
+
+    @Override
+    public List<T> findAll()
+    {
+        List<T> all = new ArrayList<>();
+        int slots = file.slots();
+        for (int slot = 0; slot < slots; slot++)
+        {
+            T entity = read(idOfSlot(slot));
+            if (entity != null)
+            {
+                all.add(entity);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<Integer> ids)
+    {
+        List<T> found = new ArrayList<>();
+        for (Integer id : ids)
+        {
+            T entity = read(id);
+            if (entity != null)
+            {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long count()
+    {
+        return file.live();
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities)
+    {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities)
+        {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public void deleteById(Integer id)
+    {
+        if (!file.isLive(slotOf(id)))
+        {
+            throw new EmptyResultDataAccessException(String.format("No entity with id %s exists", id), 1);
+        }
+        file.delete(slotOf(id));
+    }
+
+    @Override
+    public void delete(T entity)
+    {
+        deleteById(idOf(entity));
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities)
+    {
+        for (T entity : entities)
+        {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll()
+    {
+        deleteAll(findAll());
+    }
+
+    @Override
+    public void deleteInBatch(Iterable<T> entities)
+    {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllInBatch()
+    {
+        deleteAll();
+    }
+
+    @Override
+    public void flush()
+    {
+        //every save is written to the file immediately
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity)
+    {
+        return save(entity);
+    }
+
+    @Override
+    public T getOne(Integer id)
+    {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException(String.format("No entity with id %s exists", id)));
+    }
+
+    @Override
+    public List<T> findAll(Sort sort)
+    {
+        List<T> all = findAll();
+        all.sort(InMemoryQueries.comparator(sort));
+        return all;
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable)
+    {
+        return InMemoryQueries.page(findAll(), pageable);
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example)
+    {
+        List<S> found = findAll(example);
+        if (found.size() > 1)
+        {
+            throw new IncorrectResultSizeDataAccessException(1, found.size());
+        }
+        return found.stream().findFirst();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example)
+    {
+        return InMemoryQueries.matching(findAll(), example);
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort)
+    {
+        List<S> found = findAll(example);
+        found.sort(InMemoryQueries.comparator(sort));
+        return found;
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable)
+    {
+        return InMemoryQueries.page(findAll(example), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example)
+    {
+        return findAll(example).size();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example)
+    {
+        return !findAll(example).isEmpty();
+    }
+
+    @Override
+    public void close()
+    {
+        file.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Stores players and games in memory-mapped record files instead of the
+ * database when the "mmap" profile is active. The files are kept in
+ * tictactoe.mmap.directory and reopened on restart; set
+ * tictactoe.mmap.sync=true to force every write to disk.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Configuration
+@Profile("mmap")
+public class MappedStorageConfig
+{
+    private Path directory;
+    private boolean sync;
+
+    /**
+     * Creates the storage directory if it does not exist.
+     *
+     * @param directory the directory of the record files
+     * @param sync true to force every write to disk
+     */
+    public MappedStorageConfig(@Value("${tictactoe.mmap.directory:data}") String directory,
+                               @Value("${tictactoe.mmap.sync:false}") boolean sync)
+    {
+        this.directory = Paths.get(directory);
+        this.sync = sync;
+        try
+        {
+            Files.createDirectories(this.directory);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Opens the player records, used in place of the JPA player data layer.
+     *
+     * @return the player data layer
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MappedPlayerRepository mappedPlayerRepository()
+    {
+        return new MappedPlayerRepository(directory.resolve("players.dat"), sync);
+    }
+
+    /**
+     * Opens the game records, used in place of the JPA game data layer.
+     *
+     * @param players the player data layer
+     * @return the game data layer
+     */
+    @Bean(destroyMethod = "close")
+    @Primary
+    public MappedGameRepository mappedGameRepository(MappedPlayerRepository players)
+    {
+        return new MappedGameRepository(directory.resolve("games.dat"), sync, players);
+    }
+}
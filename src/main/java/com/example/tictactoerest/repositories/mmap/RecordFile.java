@@ -0,0 +1,293 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A file of fixed-size records, mapped into memory. Record n is stored
+ * in slot n, and every slot has two copies of its record:
+ *
+ * [seq][status][payload][crc] [seq][status][payload][crc]
+ *
+ * A write goes to the older copy with the next sequence number, and the
+ * checksum is written last. If the process stops in the middle of a
+ * write, the checksum of that copy does not match and the other copy is
+ * used when the file is reopened, so every write is all or nothing.
+ *
+ * Writes reach the operating system as soon as they are made, so they
+ * survive the process stopping. With sync enabled, every write is also
+ * forced to disk, so it survives the machine stopping. A file holds
+ * up to 2 GB of records.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+class RecordFile implements Closeable
+{
+    static final int LIVE = 1;
+    static final int DELETED = 2;
+
+    private static final int MAGIC = 0x54545431; //TTT1
+    private static final int HEADER_SIZE = 16; //magic, payload size, reserved
+    private static final int MIN_CAPACITY = 1024;
+
+    private final FileChannel channel;
+    private final int payloadSize;
+    private final int copySize;
+    private final int slotSize;
+    private final boolean sync;
+
+    private MappedByteBuffer map;
+    private int capacity;
+    private int slots = 0;
+    private int live = 0;
+
+    //the sequence number, status and copy (0 or 1) of the current record in each slot
+    private int[] seqs;
+    private byte[] statuses;
+    private byte[] copies;
+
+    /**
+     * Opens a record file, or creates it if it does not exist.
+     *
+     * @param path the file
+     * @param payloadSize the size of each record in bytes
+     * @param sync true to force every write to disk
+     */
+    RecordFile(Path path, int payloadSize, boolean sync)
+    {
+        this.payloadSize = payloadSize;
+        this.copySize = 4 + 4 + payloadSize + 4;
+        this.slotSize = copySize * 2;
+        this.sync = sync;
+        try
+        {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            capacity = Math.max(MIN_CAPACITY, (int) ((channel.size() - HEADER_SIZE) / slotSize));
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * slotSize);
+            if (created)
+            {
+                map.putInt(0, MAGIC);
+                map.putInt(4, payloadSize);
+            }
+            else if (map.getInt(0) != MAGIC || map.getInt(4) != payloadSize)
+            {
+                throw new IllegalStateException(String.format("%s is not a record file with %s byte records", path, payloadSize));
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        seqs = new int[capacity];
+        statuses = new byte[capacity];
+        copies = new byte[capacity];
+        scan();
+    }
+
+    //finds the current copy of every record
+    private void scan()
+    {
+        for (int slot = 0; slot < capacity; slot++)
+        {
+            for (int copy = 0; copy < 2; copy++)
+            {
+                int position = position(slot, copy);
+                int seq = map.getInt(position);
+                if (seq > seqs[slot] && map.getInt(position + copySize - 4) == checksum(position))
+                {
+                    seqs[slot] = seq;
+                    statuses[slot] = (byte) map.getInt(position + 4);
+                    copies[slot] = (byte) copy;
+                }
+            }
+
+            if (seqs[slot] > 0)
+            {
+                slots = slot + 1;
+                if (statuses[slot] == LIVE)
+                {
+                    live++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slots in use, including deleted records.
+     *
+     * @return one more than the highest slot written
+     */
+    synchronized int slots()
+    {
+        return slots;
+    }
+
+    /**
+     * Returns the number of records that are not deleted.
+     *
+     * @return the number of live records
+     */
+    synchronized int live()
+    {
+        return live;
+    }
+
+    /**
+     * Returns true if the slot holds a record that is not deleted.
+     *
+     * @param slot the slot
+     * @return true if the record is live, otherwise false
+     */
+    synchronized boolean isLive(int slot)
+    {
+        return slot >= 0 && slot < slots && statuses[slot] == LIVE;
+    }
+
+    /**
+     * Reads a live record.
+     *
+     * @param slot the slot
+     * @return the payload, or null if the slot is empty or deleted
+     */
+    synchronized ByteBuffer read(int slot)
+    {
+        if (!isLive(slot))
+        {
+            return null;
+        }
+
+        int position = position(slot, copies[slot]) + 8;
+        ByteBuffer view = map.duplicate();
+        view.position(position).limit(position + payloadSize);
+        ByteBuffer payload = ByteBuffer.allocate(payloadSize);
+        payload.put(view).flip();
+        return payload;
+    }
+
+    /**
+     * Writes a record to the next free slot.
+     *
+     * @param payload the record
+     * @return the slot written
+     */
+    synchronized int append(ByteBuffer payload)
+    {
+        int slot = slots;
+        write(slot, LIVE, payload);
+        return slot;
+    }
+
+    /**
+     * Replaces the record in a slot.
+     *
+     * @param slot the slot
+     * @param payload the new record
+     */
+    synchronized void write(int slot, ByteBuffer payload)
+    {
+        write(slot, LIVE, payload);
+    }
+
+    /**
+     * Marks the record in a slot as deleted.
+     *
+     * @param slot the slot
+     */
+    synchronized void delete(int slot)
+    {
+        write(slot, DELETED, ByteBuffer.allocate(payloadSize));
+    }
+
+    private void write(int slot, int status, ByteBuffer payload)
+    {
+        while (slot >= capacity)
+        {
+            grow();
+        }
+
+        //the copy that is not current, so the current one survives a torn write
+        int copy = seqs[slot] == 0 ? 0 : 1 - copies[slot];
+        int seq = seqs[slot] + 1;
+        int position = position(slot, copy);
+        map.putInt(position, seq);
+        map.putInt(position + 4, status);
+        ByteBuffer view = map.duplicate();
+        view.position(position + 8);
+        view.put(payload.duplicate().rewind());
+        map.putInt(position + copySize - 4, checksum(position));
+        if (sync)
+        {
+            map.force();
+        }
+
+        if (statuses[slot] == LIVE)
+        {
+            live--;
+        }
+        if (status == LIVE)
+        {
+            live++;
+        }
+        seqs[slot] = seq;
+        statuses[slot] = (byte) status;
+        copies[slot] = (byte) copy;
+        slots = Math.max(slots, slot + 1);
+    }
+
+    private void grow()
+    {
+        capacity *= 2;
+        try
+        {
+            //mapping past the end of the file extends it
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * slotSize);
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+        seqs = Arrays.copyOf(seqs, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        copies = Arrays.copyOf(copies, capacity);
+    }
+
+    private int position(int slot, int copy)
+    {
+        return HEADER_SIZE + slot * slotSize + copy * copySize;
+    }
+
+    //the checksum of the sequence number, status and payload of a copy
+    private int checksum(int position)
+    {
+        ByteBuffer view = map.duplicate();
+        view.position(position).limit(position + copySize - 4);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        try
+        {
+            map.force();
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.tictactoerest.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs work for each game on a lightweight actor: a mailbox that is
+ * drained by one pool thread at a time. Work for the same game runs in
+ * the order it was submitted, work for different games runs in parallel
+ * on a shared pool of tictactoe.actors.threads threads (twice the number
+ * of processors if 0). An actor is removed once its mailbox is empty and
+ * created again by the next submit, so idle games cost nothing.
+ *
+ * Submitting never waits for work that is queued or running.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class GameActors
+{
+    private final ConcurrentMap<Integer, Actor> actors = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+
+    /**
+     * Creates the pool that runs the actors.
+     *
+     * @param threads the number of pool threads, or 0 for twice the number of processors
+     */
+    public GameActors(@Value("${tictactoe.actors.threads:0}") int threads)
+    {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "game-actor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        pool = Executors.newFixedThreadPool(size, factory);
+    }
+
+    /**
+     * Runs work on the actor of a game, after the work already submitted
+     * for that game.
+     *
+     * @param gameId the game id
+     * @param work the work to run
+     * @param <T> the result type
+     * @return a future that completes with the result of the work, or
+     *         with the exception it threw
+     */
+    public <T> CompletableFuture<T> submit(int gameId, Supplier<T> work)
+    {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try
+            {
+                result.complete(work.get());
+            }
+            catch (RuntimeException ex)
+            {
+                result.completeExceptionally(ex);
+            }
+        };
+
+        //a retired actor refuses the task, so try the actor that replaces it
+        while (!actors.computeIfAbsent(gameId, Actor::new).offer(task))
+        {
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of games with work queued or running.
+     *
+     * @return the number of actors
+     */
+    public int size()
+    {
+        return actors.size();
+    }
+
+    /**
+     * Stops the pool after the queued work is done.
+     */
+    @PreDestroy
+    public void close()
+    {
+        pool.shutdown();
+    }
+
+    //the mailbox of one game
+    private final class Actor implements Runnable
+    {
+        private final int gameId;
+        private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+        //tasks counted but not yet run, or -1 once the actor is retired
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Actor(int gameId)
+        {
+            this.gameId = gameId;
+        }
+
+        //adds a task, and starts draining if the mailbox was empty
+        private boolean offer(Runnable task)
+        {
+            //counted before it is added, so the mailbox only ever holds counted tasks
+            int count;
+            do
+            {
+                count = pending.get();
+                if (count < 0)
+                {
+                    return false;
+                }
+            }
+            while (!pending.compareAndSet(count, count + 1));
+
+            mailbox.add(task);
+            if (count == 0)
+            {
+                pool.execute(this);
+            }
+            return true;
+        }
+
+        //runs until every counted task is done, then retires if nothing new arrived
+        @Override
+        public void run()
+        {
+            do
+            {
+                Runnable task;
+                while ((task = mailbox.poll()) == null)
+                {
+                    //counted but not added yet
+                    Thread.onSpinWait();
+                }
+                task.run();
+            }
+            while (pending.decrementAndGet() > 0);
+
+            //a task counted after this point starts a new drain instead
+            if (pending.compareAndSet(0, -1))
+            {
+                actors.remove(gameId, this);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.repositories.ActiveGameStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts moves and finished games, and reports the number of games and
+ * players, through Micrometer (see /actuator/metrics and
+ * /actuator/prometheus):
+ *
+ * - tictactoe.moves: moves made
+ * - tictactoe.moves.rejected: moves that threw, tagged by exception type
+ * - tictactoe.games.finished: games won or drawn, tagged by result
+ * - tictactoe.games.active: games being played, held in memory by the
+ *   write-behind store (always 0 with tictactoe.write-behind.enabled=false)
+ * - tictactoe.players: players on the leaderboard
+ *
+ * Request latency is timed by Spring Boot (http.server.requests) and
+ * repository calls by {@link com.example.tictactoerest.repositories.RepositoryMetrics}.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Component
+public class GameMetrics
+{
+    private MeterRegistry registry;
+    private final Counter moves;
+    private final Counter wins;
+    private final Counter draws;
+
+    /**
+     * Registers the meters.
+     *
+     * @param registry the meter registry
+     * @param activeGames the in-memory store of games being played
+     * @param leaderboard the leaderboard, which holds every player
+     */
+    public GameMetrics(MeterRegistry registry, ActiveGameStore activeGames, LeaderboardService leaderboard)
+    {
+        this.registry = registry;
+        moves = Counter.builder("tictactoe.moves")
+                .description("Moves made")
+                .register(registry);
+        wins = finished("win");
+        draws = finished("draw");
+
+        Gauge.builder("tictactoe.games.active", activeGames, ActiveGameStore::size)
+                .description("Games being played, held in memory")
+                .register(registry);
+        Gauge.builder("tictactoe.players", leaderboard, LeaderboardService::size)
+                .description("Players on the leaderboard")
+                .register(registry);
+    }
+
+    private Counter finished(String result)
+    {
+        return Counter.builder("tictactoe.games.finished")
+                .description("Games won or drawn")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Counts a move, and the result of the game if the move finished it.
+     *
+     * @param game the game after the move
+     */
+    public void moved(Game game)
+    {
+        moves.increment();
+        if (game.isDraw())
+        {
+            draws.increment();
+        }
+        else if (game.isGameOver())
+        {
+            wins.increment();
+        }
+    }
+
+    /**
+     * Counts a move that was rejected.
+     *
+     * @param ex the exception the move threw
+     */
+    public void rejected(RuntimeException ex)
+    {
+        registry.counter("tictactoe.moves.rejected", "exception", ex.getClass().getSimpleName()).increment();
+    }
+}
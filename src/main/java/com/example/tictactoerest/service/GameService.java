@@ -1,18 +1,53 @@
 package com.example.tictactoerest.service;
 
+import com.example.tictactoerest.commands.BatchMove;
 import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.engine.PerfectPlayTable;
+import com.example.tictactoerest.entities.BitBoard;
 import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.MoveEvent;
 import com.example.tictactoerest.entities.Player;
 import com.example.tictactoerest.exceptions.GameStateException;
 import com.example.tictactoerest.exceptions.IllegalMoveException;
 import com.example.tictactoerest.exceptions.MissingGameException;
 import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.repositories.ActiveGameStore;
+import com.example.tictactoerest.repositories.GameArchive;
+import com.example.tictactoerest.repositories.GameLocks;
 import com.example.tictactoerest.repositories.IGameRepository;
 import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.repositories.MoveLog;
+import com.example.tictactoerest.repositories.PlayerCache;
+import com.example.tictactoerest.views.BatchResult;
+import com.example.tictactoerest.views.GamePage;
+import com.example.tictactoerest.views.MoveDelta;
+import com.example.tictactoerest.views.MoveEvaluation;
+import com.example.tictactoerest.views.Replay;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Contains business logic for starting and running
@@ -24,19 +59,66 @@ import java.util.Optional;
 @Service
 public class GameService
 {
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private IGameRepository gameRepo;
+    private ActiveGameStore activeGames;
+    private GameLocks gameLocks;
     private IPlayerRepository playerRepo;
+    private PlayerCache playerCache;
+    private LeaderboardService leaderboard;
+    private PerfectPlayTable perfectPlay;
+    private EntityManager entityManager;
+    private ApplicationEventPublisher events;
+    private MoveLog moveLog;
+    private GameArchive archive;
+    private GameActors actors;
+    private boolean actorsEnabled;
+    private GameMetrics metrics;
+    private TransactionTemplate transactions;
 
     /**
      * Injects a data layer for games and players.
      *
      * @param gameRepo data layer for games
+     * @param activeGames in-memory store for games being played
+     * @param gameLocks locks that serialize changes to each game
      * @param playerRepo data layer for players
+     * @param playerCache players by id, in front of the player data layer
+     * @param leaderboard players ordered by wins
+     * @param perfectPlay solved positions for evaluating games
+     * @param entityManager the JPA persistence context, used to release streamed games
+     * @param events publishes a {@link MoveDelta} for each move
+     * @param moveLog the log of every move, for replays
+     * @param archive the archived finished games, merged into game lists
+     * @param actors runs the moves of each game in order, off the request thread
+     * @param actorsEnabled true to make moves from moveAsync() on the game actors
+     * @param metrics counts moves and finished games
+     * @param transactionManager saves a finished game and the stats of its players together
      */
-    public GameService(IGameRepository gameRepo, IPlayerRepository playerRepo)
+    public GameService(IGameRepository gameRepo, ActiveGameStore activeGames, GameLocks gameLocks,
+                       IPlayerRepository playerRepo, PlayerCache playerCache, LeaderboardService leaderboard,
+                       PerfectPlayTable perfectPlay, EntityManager entityManager,
+                       ApplicationEventPublisher events, MoveLog moveLog, GameArchive archive,
+                       GameActors actors, @Value("${tictactoe.actors.enabled:false}") boolean actorsEnabled,
+                       GameMetrics metrics, PlatformTransactionManager transactionManager)
     {
         this.gameRepo = gameRepo;
+        this.activeGames = activeGames;
+        this.gameLocks = gameLocks;
         this.playerRepo = playerRepo;
+        this.playerCache = playerCache;
+        this.leaderboard = leaderboard;
+        this.perfectPlay = perfectPlay;
+        this.entityManager = entityManager;
+        this.events = events;
+        this.moveLog = moveLog;
+        this.archive = archive;
+        this.actors = actors;
+        this.actorsEnabled = actorsEnabled;
+        this.metrics = metrics;
+        this.transactions = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -47,7 +129,7 @@ public class GameService
      */
     public Player getPlayerById(int playerId)
     {
-        Optional<Player> player = playerRepo.findById(playerId);
+        Optional<Player> player = playerCache.findById(playerId);
         if (player.isEmpty())
         {
             throw new MissingPlayerException(String.format("Player with id %s is missing", playerId));
@@ -63,16 +145,9 @@ public class GameService
      */
     public boolean alreadyInGame(Player player)
     {
-        List<Game> games = gameRepo.findAllByPlayerXEqualsOrPlayerOEquals(player, player);
-        for (Game game : games)
-        {
-            if (!game.isGameOver() && !game.isDraw())
-            {
-                return true;
-            }
-        }
-
-        return false;
+        //one existence check per column, so each can stop at the first match on its own index
+        return gameRepo.existsByPlayerXAndGameoverFalseAndDrawFalse(player) ||
+               gameRepo.existsByPlayerOAndGameoverFalseAndDrawFalse(player);
     }
 
     /**
@@ -101,13 +176,91 @@ public class GameService
 
         //create the game and return it
         Game game = Game.builder()
-                .gameState(new char[]{' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '})
                 .playerX(playerX)
                 .playerO(playerO)
                 .build();
 
-        game = gameRepo.save(game);
-        return game;
+        return activeGames.add(game).copy();
+    }
+
+    /**
+     * Starts a batch of new tictactoe games. All players are read with one
+     * query, all active games of those players with another, and the new
+     * games are saved in a single batch.
+     *
+     * @param matchUps the players of each new game
+     * @return a result for each match up, in the same order
+     */
+    public List<BatchResult> newGames(List<MatchUp> matchUps)
+    {
+        Set<Integer> playerIds = new HashSet<>();
+        for (MatchUp matchUp : matchUps)
+        {
+            playerIds.add(matchUp.getPlayerXId());
+            playerIds.add(matchUp.getPlayerOId());
+        }
+
+        Map<Integer, Player> players = new HashMap<>();
+        for (Player player : playerRepo.findAllById(playerIds))
+        {
+            players.put(player.getPlayerId(), player);
+        }
+
+        //players in an active game, and players given a game earlier in this batch
+        Set<Integer> busy = new HashSet<>();
+        for (MatchUp active : gameRepo.findActiveMatchUps(playerIds))
+        {
+            busy.add(active.getPlayerXId());
+            busy.add(active.getPlayerOId());
+        }
+
+        BatchResult[] results = new BatchResult[matchUps.size()];
+        List<Game> games = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < matchUps.size(); i++)
+        {
+            try
+            {
+                Player playerX = batchPlayer(players, matchUps.get(i).getPlayerXId());
+                Player playerO = batchPlayer(players, matchUps.get(i).getPlayerOId());
+                for (Player player : new Player[]{playerX, playerO})
+                {
+                    if (busy.contains(player.getPlayerId()))
+                    {
+                        throw new GameStateException(String.format("Player %s already in another game", player.getPlayerId()));
+                    }
+                }
+
+                busy.add(playerX.getPlayerId());
+                busy.add(playerO.getPlayerId());
+                games.add(Game.builder()
+                        .playerX(playerX)
+                        .playerO(playerO)
+                        .build());
+                positions.add(i);
+            }
+            catch (RuntimeException ex)
+            {
+                results[i] = BatchResult.failure(ex);
+            }
+        }
+
+        List<Game> saved = activeGames.addAll(games);
+        for (int i = 0; i < saved.size(); i++)
+        {
+            results[positions.get(i)] = BatchResult.success(HttpStatus.CREATED, saved.get(i).copy());
+        }
+        return List.of(results);
+    }
+
+    private Player batchPlayer(Map<Integer, Player> players, int playerId)
+    {
+        Player player = players.get(playerId);
+        if (player == null)
+        {
+            throw new MissingPlayerException(String.format("Player with id %s is missing", playerId));
+        }
+        return player;
     }
 
     /**
@@ -117,7 +270,114 @@ public class GameService
      */
     public List<Game> games()
     {
-        return gameRepo.findAll();
+        List<Game> games = new ArrayList<>(activeGames.current(gameRepo.findAll()));
+        games.sort(Comparator.comparingInt(Game::getGameId));
+        return GameArchive.merge(games, archive.findAll(), false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of games (active or finished) in id order.
+     *
+     * @param after only games with a greater id are returned
+     * @param limit the maximum number of games, up to MAX_PAGE_SIZE
+     * @return a page of games and the cursor of the next page
+     */
+    public GamePage games(int after, int limit)
+    {
+        limit = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        //read one extra game to find out if there is another page
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<Game> games = GameArchive.merge(activeGames.current(gameRepo.findPageAfter(after, page)),
+                archive.findPageAfter(after, page), false, limit + 1);
+        Integer next = null;
+        if (games.size() > limit)
+        {
+            games = games.subList(0, limit);
+            next = games.get(limit - 1).getGameId();
+        }
+        return new GamePage(games, next);
+    }
+
+    /**
+     * Returns a page of games (active or finished) with a token on a cell,
+     * in id order. Games are matched on their saved board, so a move made
+     * since the last write-behind flush may not be found yet.
+     *
+     * @param playerX true to search for x tokens, false for o tokens
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param after only games with a greater id are returned
+     * @param limit the maximum number of games, up to MAX_PAGE_SIZE
+     * @throws IllegalMoveException if the cell is not on the board
+     * @return a page of games and the cursor of the next page
+     */
+    public GamePage gamesWithToken(boolean playerX, int row, int col, int after, int limit)
+    {
+        if (row < 0 || row >= BitBoard.ROWS || col < 0 || col >= BitBoard.COLS)
+        {
+            throw new IllegalMoveException(String.format("Bad row (%s) or column (%s)", row, col));
+        }
+        limit = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+
+        //read one extra game to find out if there is another page
+        int token = BitBoard.packedCell(playerX, row, col);
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<Integer> gameIds = new ArrayList<>(gameRepo.findIdsWithTokenAfter(token, after, page));
+        gameIds.addAll(archive.findIdsWithTokenAfter(token, after, page));
+        gameIds.sort(null);
+        Integer next = null;
+        if (gameIds.size() > limit)
+        {
+            gameIds = gameIds.subList(0, limit);
+            next = gameIds.get(limit - 1);
+        }
+
+        List<Game> games = gameIds.isEmpty() ? List.of() : GameArchive.merge(
+                activeGames.current(gameRepo.findAllWithPlayersById(gameIds)),
+                archive.findAllById(gameIds), false, limit);
+
+        //tokens are never removed, so the games in memory still have the token
+        return new GamePage(games, next);
+    }
+
+    /**
+     * Passes every game (active or finished) to the consumer in id order.
+     * Games are read from the database as they are consumed and released
+     * afterwards, so memory use does not grow with the number of games.
+     *
+     * @param consumer receives each game
+     */
+    @Transactional(readOnly = true)
+    public void streamGames(Consumer<Game> consumer)
+    {
+        try (Stream<Game> games = gameRepo.streamAll(); Stream<Game> archived = archive.streamAll())
+        {
+            //both streams are in id order, so take the lower id of the two each time
+            Iterator<Game> saved = games.iterator();
+            Iterator<Game> old = archived.iterator();
+            Game nextSaved = saved.hasNext() ? saved.next() : null;
+            Game nextOld = old.hasNext() ? old.next() : null;
+            int count = 0;
+            while (nextSaved != null || nextOld != null)
+            {
+                if (nextOld == null || (nextSaved != null && nextSaved.getGameId() < nextOld.getGameId()))
+                {
+                    consumer.accept(activeGames.current(nextSaved));
+                    nextSaved = saved.hasNext() ? saved.next() : null;
+                }
+                else
+                {
+                    consumer.accept(nextOld);
+                    nextOld = old.hasNext() ? old.next() : null;
+                }
+
+                if (++count % STREAM_BATCH_SIZE == 0)
+                {
+                    entityManager.clear();
+                }
+            }
+        }
     }
 
     /**
@@ -128,7 +388,40 @@ public class GameService
      */
     public Game getGameById(int gameId)
     {
-        Optional<Game> game = gameRepo.findById(gameId);
+        Lock lock = gameLocks.forGame(gameId);
+        lock.lock();
+        try
+        {
+            return findGame(gameId).copy();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the turn counter of a game, which increases with every
+     * move. The game itself is not loaded.
+     *
+     * @param gameId the game id
+     * @throws MissingGameException if the game is not found
+     * @return the number of moves made in the game
+     */
+    public int getTurn(int gameId)
+    {
+        Optional<Integer> turn = activeGames.findTurn(gameId);
+        if (turn.isEmpty())
+        {
+            throw new MissingGameException(String.format("Game with id %s missing", gameId));
+        }
+        return turn.get();
+    }
+
+    //returns the shared copy of a game, the caller must hold the game's lock
+    private Game findGame(int gameId)
+    {
+        Optional<Game> game = activeGames.findById(gameId);
         if (game.isEmpty())
         {
             throw new MissingGameException(String.format("Game with id %s missing", gameId));
@@ -137,7 +430,8 @@ public class GameService
     }
 
     /**
-     * Makes a move in a game of tictactoe.
+     * Makes a move in a game of tictactoe. A {@link MoveDelta} is
+     * published for each move made.
      *
      * @param gameId the id of the game
      * @param move the move made
@@ -147,8 +441,91 @@ public class GameService
      */
     public Game move(int gameId, GameMove move)
     {
-        Game game = getGameById(gameId);
-        Player player = getPlayerById(move.getPlayerId());
+        //moves in the same game are made one at a time
+        Lock lock = gameLocks.forGame(gameId);
+        lock.lock();
+        try
+        {
+            Game game = moveLocked(gameId, move);
+            metrics.moved(game);
+            return game;
+        }
+        catch (RuntimeException ex)
+        {
+            metrics.rejected(ex);
+            throw ex;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes a move in a game of tictactoe without blocking the caller.
+     * With tictactoe.actors.enabled=true the move is queued on the actor
+     * of the game (see {@link GameActors}), otherwise it is made on the
+     * calling thread.
+     *
+     * @param gameId the id of the game
+     * @param move the move made
+     * @return a future that completes with the updated game, or with the
+     *         exception move() would have thrown
+     */
+    public CompletableFuture<Game> moveAsync(int gameId, GameMove move)
+    {
+        if (actorsEnabled)
+        {
+            return actors.submit(gameId, () -> move(gameId, move));
+        }
+
+        try
+        {
+            return CompletableFuture.completedFuture(move(gameId, move));
+        }
+        catch (RuntimeException ex)
+        {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /**
+     * Makes a batch of moves, in order. Games that are not in memory are
+     * read with one query, so only games that end need to be written
+     * before the batch returns.
+     *
+     * @param moves the moves, each with the id of its game
+     * @return a result for each move, in the same order
+     */
+    public List<BatchResult> moves(List<BatchMove> moves)
+    {
+        Set<Integer> gameIds = new HashSet<>();
+        for (BatchMove move : moves)
+        {
+            gameIds.add(move.getGameId());
+        }
+        activeGames.loadAll(gameIds);
+
+        List<BatchResult> results = new ArrayList<>(moves.size());
+        for (BatchMove move : moves)
+        {
+            try
+            {
+                results.add(BatchResult.success(HttpStatus.OK, move(move.getGameId(), move.toGameMove())));
+            }
+            catch (RuntimeException ex)
+            {
+                results.add(BatchResult.failure(ex));
+            }
+        }
+        return results;
+    }
+
+    private Game moveLocked(int gameId, GameMove move)
+    {
+        Game game = findGame(gameId);
+        Player player = getPlayerForMove(game, move.getPlayerId());
+        char token = game.isPlayerX(player) ? 'x' : 'o';
 
         //preconditions
         if (game.isGameOver())
@@ -165,31 +542,179 @@ public class GameService
         }
         else
         {
+            Game before = game.copy();
             game.move(player, move.getRow(), move.getCol());
 
             //check for game status
-            boolean gameDone = false;
-            Player other = game.getOtherPlayer(player);
-            if (game.isDraw())
+            if (game.isDraw() || game.isGameOver())
             {
-                gameDone = true;
-                other.draw();
-                player.draw();
+                game = finish(game, before, player);
             }
-            else if (game.isGameOver())
+            else
             {
-                gameDone = true;
-                other.lose();
-                player.win();
+                game = activeGames.update(game);
             }
+        }
 
-            if (gameDone)
-            {
-                playerRepo.save(other);
-                playerRepo.save(player);
-            }
+        //published under the game lock, so listeners see the moves of a game in order
+        events.publishEvent(MoveDelta.builder()
+                .gameId(game.getGameId())
+                .turn(game.getTurn())
+                .playerId(player.getPlayerId())
+                .row(move.getRow())
+                .col(move.getCol())
+                .token(token)
+                .draw(game.isDraw())
+                .gameOver(game.isGameOver())
+                .build());
+        return game.copy();
+    }
+
+    //the players of a game being played are already loaded, so only look up other players
+    private Player getPlayerForMove(Game game, int playerId)
+    {
+        if (game.getPlayerX().getPlayerId() == playerId)
+        {
+            return game.getPlayerX();
         }
-        return gameRepo.save(game);
+        else if (game.getPlayerO().getPlayerId() == playerId)
+        {
+            return game.getPlayerO();
+        }
+        return getPlayerById(playerId);
+    }
+
+    //saves a finished game and then the stats of both players in one transaction,
+    //and puts back the game as it was before the move if that fails
+    private Game finish(Game game, Game before, Player mover)
+    {
+        int playerId = mover.getPlayerId();
+        int otherId = game.getOtherPlayer(mover).getPlayerId();
+        Game saved;
+        try
+        {
+            saved = transactions.execute(status -> {
+                Game updated = activeGames.update(game);
+                if (updated.isDraw())
+                {
+                    playerRepo.recordDraw(playerId, otherId);
+                }
+                else
+                {
+                    playerRepo.recordWin(playerId, otherId);
+                }
+                return updated;
+            });
+        }
+        catch (OptimisticLockingFailureException ex)
+        {
+            //the saved game is newer than the game in memory
+            activeGames.evict(game.getGameId());
+            throw ex;
+        }
+        catch (RuntimeException ex)
+        {
+            activeGames.restore(before);
+            throw ex;
+        }
+
+        updateStats(saved, mover);
+        return saved;
+    }
+
+    //records the saved result of a finished game in memory
+    private void updateStats(Game game, Player mover)
+    {
+        boolean moverIsX = game.isPlayerX(mover);
+
+        //the saved stats were incremented in one statement, the copies only update the response
+        Player player = mover.copy();
+        Player other = game.getOtherPlayer(mover).copy();
+        if (game.isDraw())
+        {
+            leaderboard.recordDraw(player.getPlayerId(), other.getPlayerId());
+            other.draw();
+            player.draw();
+        }
+        else
+        {
+            leaderboard.recordWin(player.getPlayerId(), other.getPlayerId());
+            other.lose();
+            player.win();
+        }
+
+        //the cached stats are out of date once the update is saved
+        playerCache.evict(player.getPlayerId());
+        playerCache.evict(other.getPlayerId());
+
+        game.setPlayerX(moverIsX ? player : other);
+        game.setPlayerO(moverIsX ? other : player);
+    }
+
+    /**
+     * Returns the best move for the player whose turn it is in a game,
+     * and the result of the game if both players play perfectly.
+     *
+     * @param gameId the id of the game
+     * @throws MissingGameException if the game is not found
+     * @throws GameStateException if the game is already finished
+     * @return the evaluation of the current position
+     */
+    public MoveEvaluation evaluate(int gameId)
+    {
+        Game game = getGameById(gameId);
+        BitBoard board = game.getBoard();
+        if (game.isGameOver() || game.isDraw() || !perfectPlay.isSolved(board.getXMask(), board.getOMask()))
+        {
+            throw new GameStateException(String.format("Game with id %s is finished", gameId));
+        }
+
+        int cell = perfectPlay.bestCell(board.getXMask(), board.getOMask());
+        Player toMove = game.getTurn() % 2 == 0 ? game.getPlayerX() : game.getPlayerO();
+        return MoveEvaluation.builder()
+                .gameId(gameId)
+                .playerId(toMove.getPlayerId())
+                .row(cell / BitBoard.COLS)
+                .col(cell % BitBoard.COLS)
+                .outcome(perfectPlay.outcome(board.getXMask(), board.getOMask()))
+                .build();
+    }
+
+    /**
+     * Rebuilds a game from the move log, as it was after the input
+     * number of moves.
+     *
+     * @param gameId the game id
+     * @param ply the number of moves to replay, or null for every logged move
+     * @throws MissingGameException if the game is not found
+     * @throws IllegalMoveException if the log has fewer moves than requested
+     * @return the board after the moves, and the moves
+     */
+    public Replay replay(int gameId, Integer ply)
+    {
+        List<MoveEvent> logged = moveLog.history(getGameById(gameId));
+        int plies = ply == null ? logged.size() : ply;
+        if (plies < 0 || plies > logged.size())
+        {
+            throw new IllegalMoveException(String.format("Game with id %s has %s logged moves", gameId, logged.size()));
+        }
+
+        BitBoard board = new BitBoard();
+        List<GameMove> moves = new ArrayList<>(plies);
+        for (MoveEvent move : logged.subList(0, plies))
+        {
+            board.place(move.getPly() % 2 == 0, 1 << move.getCell());
+            moves.add(new GameMove(move.getPlayerId(), move.getCell() / BitBoard.COLS, move.getCell() % BitBoard.COLS));
+        }
+
+        return Replay.builder()
+                .gameId(gameId)
+                .ply(plies)
+                .gameState(board.toCharArray())
+                .draw(board.isFull())
+                .gameOver(board.hasWinner())
+                .moves(moves)
+                .build();
     }
 
     /**
@@ -198,12 +723,22 @@ public class GameService
      */
     public void deleteById(int gameId)
     {
-        Optional<Game> savedGame = gameRepo.findById(gameId);
-        if (savedGame.isEmpty())
+        Lock lock = gameLocks.forGame(gameId);
+        lock.lock();
+        try
+        {
+            Optional<Game> savedGame = activeGames.findById(gameId);
+            if (savedGame.isEmpty())
+            {
+                throw new MissingGameException(String.format("Player with id %s missing", gameId));
+            }
+            activeGames.deleteById(gameId);
+            moveLog.deleteGame(gameId);
+        }
+        finally
         {
-            throw new MissingGameException(String.format("Player with id %s missing", gameId));
+            lock.unlock();
         }
-        gameRepo.deleteById(gameId);
     }
 
     @Override
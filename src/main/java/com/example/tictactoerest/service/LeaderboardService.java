@@ -0,0 +1,357 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.views.Standing;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps players ordered by wins in memory, so the leaderboard does not
+ * need to load and sort every player. The order is built from the
+ * saved players on startup and updated as players are added, renamed
+ * or deleted and as games finish.
+ *
+ * Top-N reads walk a sorted set. The rank of a single player is counted
+ * in a Fenwick tree indexed by number of wins, so it takes logarithmic
+ * time. Reads share a read lock and updates take the write lock, so a
+ * page never sees a player halfway through a change, and its ranks
+ * agree with standing().
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class LeaderboardService
+{
+    //most wins first, then oldest player first
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry entry) -> -entry.wins)
+            .thenComparingInt(entry -> entry.playerId);
+
+    private IPlayerRepository playerRepo;
+
+    //guards the entries, the order and the tree together
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock read = lock.readLock();
+    private final Lock write = lock.writeLock();
+
+    private final NavigableSet<Entry> ordered = new TreeSet<>(ORDER);
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    //number of players with each number of wins (size is a power of two)
+    private int[] tree = new int[64];
+    private int total = 0;
+
+    /**
+     * Creates a leaderboard for the saved players.
+     *
+     * @param playerRepo the player data layer
+     */
+    public LeaderboardService(IPlayerRepository playerRepo)
+    {
+        this.playerRepo = playerRepo;
+    }
+
+    /**
+     * Loads the saved players into the leaderboard.
+     */
+    @PostConstruct
+    public void rebuild()
+    {
+        List<Player> players = playerRepo.findAll();
+        write.lock();
+        try
+        {
+            ordered.clear();
+            entries.clear();
+            tree = new int[tree.length];
+            total = 0;
+            for (Player player : players)
+            {
+                put(new Entry(player.getPlayerId(), player.getName(),
+                        player.getWins(), player.getLosses(), player.getDraws()));
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Returns the players with the most wins.
+     *
+     * @param limit the maximum number of players, up to GameService.MAX_PAGE_SIZE
+     * @return the top players, best first
+     */
+    public List<Standing> top(int limit)
+    {
+        limit = Math.min(Math.max(limit, 1), GameService.MAX_PAGE_SIZE);
+
+        List<Standing> top = new ArrayList<>(limit);
+        read.lock();
+        try
+        {
+            int rank = 0;
+            int previousWins = -1;
+            for (Entry entry : ordered)
+            {
+                if (top.size() == limit)
+                {
+                    break;
+                }
+
+                //players with the same wins share the rank of the first of them
+                if (entry.wins != previousWins)
+                {
+                    rank = top.size() + 1;
+                    previousWins = entry.wins;
+                }
+                top.add(entry.toStanding(rank));
+            }
+            return top;
+        }
+        finally
+        {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the place of a player on the leaderboard.
+     *
+     * @param playerId the player id
+     * @throws MissingPlayerException if the player is not on the leaderboard
+     * @return the rank and stats of the player
+     */
+    public Standing standing(int playerId)
+    {
+        read.lock();
+        try
+        {
+            Entry entry = entries.get(playerId);
+            if (entry == null)
+            {
+                throw new MissingPlayerException(String.format("Player with id %s missing", playerId));
+            }
+
+            //one more than the number of players with more wins
+            return entry.toStanding(total - countUpTo(entry.wins) + 1);
+        }
+        finally
+        {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Adds a new player, or updates the name of an existing one.
+     *
+     * @param player the saved player
+     */
+    public void save(Player player)
+    {
+        write.lock();
+        try
+        {
+            Entry entry = entries.get(player.getPlayerId());
+            if (entry == null)
+            {
+                put(new Entry(player.getPlayerId(), player.getName(),
+                        player.getWins(), player.getLosses(), player.getDraws()));
+            }
+            else
+            {
+                replace(entry, new Entry(entry.playerId, player.getName(), entry.wins, entry.losses, entry.draws));
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted player.
+     *
+     * @param playerId the player id
+     */
+    public void delete(int playerId)
+    {
+        write.lock();
+        try
+        {
+            Entry entry = entries.remove(playerId);
+            if (entry != null)
+            {
+                ordered.remove(entry);
+                add(entry.wins, -1);
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Records the result of a game that one player won.
+     *
+     * @param winnerId the id of the player that won
+     * @param loserId the id of the player that lost
+     */
+    public void recordWin(int winnerId, int loserId)
+    {
+        write.lock();
+        try
+        {
+            Entry winner = entries.get(winnerId);
+            if (winner != null)
+            {
+                replace(winner, new Entry(winnerId, winner.name, winner.wins + 1, winner.losses, winner.draws));
+            }
+
+            Entry loser = entries.get(loserId);
+            if (loser != null)
+            {
+                replace(loser, new Entry(loserId, loser.name, loser.wins, loser.losses + 1, loser.draws));
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Records the result of a game that ended in a draw.
+     *
+     * @param playerId the id of a player
+     * @param otherId the id of the other player
+     */
+    public void recordDraw(int playerId, int otherId)
+    {
+        write.lock();
+        try
+        {
+            for (int id : new int[]{playerId, otherId})
+            {
+                Entry entry = entries.get(id);
+                if (entry != null)
+                {
+                    replace(entry, new Entry(id, entry.name, entry.wins, entry.losses, entry.draws + 1));
+                }
+            }
+        }
+        finally
+        {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of players on the leaderboard.
+     *
+     * @return the number of players
+     */
+    public int size()
+    {
+        read.lock();
+        try
+        {
+            return entries.size();
+        }
+        finally
+        {
+            read.unlock();
+        }
+    }
+
+    private void put(Entry entry)
+    {
+        entries.put(entry.playerId, entry);
+        ordered.add(entry);
+        add(entry.wins, 1);
+    }
+
+    private void replace(Entry old, Entry entry)
+    {
+        //the set is ordered by wins, so the entry is removed before it changes
+        ordered.remove(old);
+        add(old.wins, -1);
+        put(entry);
+    }
+
+    //Fenwick tree over wins: position wins + 1 holds the players with that many wins
+    private void add(int wins, int delta)
+    {
+        while (wins + 1 >= tree.length)
+        {
+            grow();
+        }
+
+        total += delta;
+        for (int i = wins + 1; i < tree.length; i += i & -i)
+        {
+            tree[i] += delta;
+        }
+    }
+
+    //the number of players with at most the input number of wins
+    private int countUpTo(int wins)
+    {
+        int count = 0;
+        for (int i = Math.min(wins + 1, tree.length - 1); i > 0; i -= i & -i)
+        {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    //every player has fewer wins than the old size, so the new nodes are empty except
+    //the one at the old size, which covers all of them
+    private void grow()
+    {
+        int size = tree.length;
+        tree = Arrays.copyOf(tree, size * 2);
+        tree[size] = total;
+    }
+
+    //an immutable leaderboard row, replaced whenever the player changes
+    private static final class Entry
+    {
+        private final int playerId;
+        private final String name;
+        private final int wins;
+        private final int losses;
+        private final int draws;
+
+        private Entry(int playerId, String name, int wins, int losses, int draws)
+        {
+            this.playerId = playerId;
+            this.name = name;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+        }
+
+        private Standing toStanding(int rank)
+        {
+            return new Standing(rank, playerId, name, wins, losses, draws);
+        }
+    }
+}
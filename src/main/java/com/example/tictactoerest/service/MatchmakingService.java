@@ -0,0 +1,353 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.views.BatchResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pairs players that ask for a game. Players are queued by win-rate
+ * band without locks, and a single pairing pass every
+ * tictactoe.matchmaking.interval-ms milliseconds matches players in the
+ * same band and starts their games in one batch. A player left alone in
+ * a band for tictactoe.matchmaking.widen-after-ms milliseconds can be
+ * matched with a player in the next band.
+ *
+ * A player stays queued until their deadline, which each call to
+ * enqueue() moves forward.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class MatchmakingService
+{
+    //players with fewer games are placed in the middle band
+    private static final int MIN_RATED_GAMES = 5;
+
+    private GameService gameService;
+    private int bands;
+    private long widenAfterMs;
+
+    private final Queue<Ticket>[] queues;
+    private final ConcurrentMap<Integer, Ticket> tickets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a matchmaker that starts games through the game service.
+     *
+     * @param gameService the service layer for Game objects
+     * @param bands the number of win-rate bands
+     * @param widenAfterMs how long a player waits before the next band is searched
+     */
+    @SuppressWarnings("unchecked")
+    public MatchmakingService(GameService gameService,
+                              @Value("${tictactoe.matchmaking.bands:5}") int bands,
+                              @Value("${tictactoe.matchmaking.widen-after-ms:5000}") long widenAfterMs)
+    {
+        this.gameService = gameService;
+        this.bands = Math.max(bands, 1);
+        this.widenAfterMs = widenAfterMs;
+        queues = new Queue[this.bands];
+        for (int band = 0; band < this.bands; band++)
+        {
+            queues[band] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Queues a player for a game, or returns the match of a player that
+     * is already queued. The future completes with the new game, or with
+     * a TimeoutException if the player is not matched before the deadline.
+     *
+     * @param playerId the player id
+     * @param waitMs how long the player stays queued from now
+     * @throws MissingPlayerException if the player is not found
+     * @throws GameStateException if the player is already in a game
+     * @return a future that completes with the new game
+     */
+    public CompletableFuture<Game> enqueue(int playerId, long waitMs)
+    {
+        long deadline = System.currentTimeMillis() + waitMs;
+        Ticket queued = tickets.get(playerId);
+        if (queued != null && queued.extend(deadline))
+        {
+            return queued.match;
+        }
+
+        Player player = gameService.getPlayerById(playerId);
+        if (gameService.alreadyInGame(player))
+        {
+            throw new GameStateException(String.format("Player %s already in another game", playerId));
+        }
+
+        Ticket ticket = new Ticket(playerId, band(player), deadline);
+        queued = tickets.putIfAbsent(playerId, ticket);
+        if (queued != null)
+        {
+            //another request for the same player queued it first
+            queued.extend(deadline);
+            return queued.match;
+        }
+        queues[ticket.band].add(ticket);
+        return ticket.match;
+    }
+
+    /**
+     * Removes a player from the queue.
+     *
+     * @param playerId the player id
+     * @throws MissingPlayerException if the player is not queued
+     * @throws GameStateException if the player is being matched
+     */
+    public void leave(int playerId)
+    {
+        Ticket ticket = tickets.get(playerId);
+        if (ticket == null)
+        {
+            throw new MissingPlayerException(String.format("Player %s is not queued", playerId));
+        }
+        if (!ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED))
+        {
+            throw new GameStateException(String.format("Player %s is being matched", playerId));
+        }
+        tickets.remove(playerId, ticket);
+        ticket.match.cancel(false);
+    }
+
+    /**
+     * Returns the number of queued players.
+     *
+     * @return the number of players waiting for a match
+     */
+    public int size()
+    {
+        return tickets.size();
+    }
+
+    //places a player in a band by the share of games won (draws count half)
+    private int band(Player player)
+    {
+        int played = player.getWins() + player.getLosses() + player.getDraws();
+        if (played < MIN_RATED_GAMES)
+        {
+            return bands / 2;
+        }
+        double rate = (player.getWins() + player.getDraws() / 2.0) / played;
+        return Math.min((int) (rate * bands), bands - 1);
+    }
+
+    /**
+     * Matches the queued players and starts their games in one batch.
+     * Runs on one thread at a time, so only this method takes tickets
+     * off the queues.
+     */
+    @Scheduled(fixedDelayString = "${tictactoe.matchmaking.interval-ms:100}")
+    public synchronized void pair()
+    {
+        long now = System.currentTimeMillis();
+        List<Ticket[]> pairs = new ArrayList<>();
+        Ticket[] alone = new Ticket[bands];
+        for (int band = 0; band < bands; band++)
+        {
+            Ticket ticket;
+            while ((ticket = queues[band].poll()) != null)
+            {
+                if (!ticket.claim())
+                {
+                    continue; //cancelled
+                }
+                if (ticket.deadline < now)
+                {
+                    expire(ticket);
+                }
+                else if (alone[band] == null)
+                {
+                    alone[band] = ticket;
+                }
+                else
+                {
+                    pairs.add(new Ticket[]{alone[band], ticket});
+                    alone[band] = null;
+                }
+            }
+        }
+
+        //players left alone long enough can be matched with the next band
+        for (int band = 0; band + 1 < bands; band++)
+        {
+            Ticket ticket = alone[band];
+            Ticket next = alone[band + 1];
+            if (ticket != null && next != null
+                    && Math.min(ticket.enqueuedAt, next.enqueuedAt) + widenAfterMs <= now)
+            {
+                pairs.add(new Ticket[]{ticket, next});
+                alone[band] = null;
+                alone[band + 1] = null;
+            }
+        }
+
+        for (Ticket ticket : alone)
+        {
+            if (ticket != null)
+            {
+                requeue(ticket);
+            }
+        }
+
+        if (!pairs.isEmpty())
+        {
+            try
+            {
+                start(pairs);
+            }
+            catch (RuntimeException ex)
+            {
+                //tickets in MATCHING would otherwise never leave the queue
+                for (Ticket[] pair : pairs)
+                {
+                    for (Ticket ticket : pair)
+                    {
+                        if (!ticket.match.isDone())
+                        {
+                            fail(ticket, ex);
+                        }
+                    }
+                }
+                throw ex;
+            }
+        }
+    }
+
+    //starts the games of the pairs; the player who waited longer plays X
+    private void start(List<Ticket[]> pairs)
+    {
+        List<MatchUp> matchUps = new ArrayList<>(pairs.size());
+        for (Ticket[] pair : pairs)
+        {
+            if (pair[1].enqueuedAt < pair[0].enqueuedAt)
+            {
+                Ticket first = pair[1];
+                pair[1] = pair[0];
+                pair[0] = first;
+            }
+            matchUps.add(new MatchUp(pair[0].playerId, pair[1].playerId));
+        }
+
+        List<BatchResult> results = gameService.newGames(matchUps);
+        for (int i = 0; i < pairs.size(); i++)
+        {
+            BatchResult result = results.get(i);
+            for (Ticket ticket : pairs.get(i))
+            {
+                if (result.getStatus() == HttpStatus.CREATED.value())
+                {
+                    complete(ticket, result.getGame());
+                }
+                else
+                {
+                    //one of the players was deleted or started a game elsewhere
+                    retry(ticket);
+                }
+            }
+        }
+    }
+
+    //puts a player back in the queue if they can still be matched
+    private void retry(Ticket ticket)
+    {
+        try
+        {
+            Player player = gameService.getPlayerById(ticket.playerId);
+            if (gameService.alreadyInGame(player))
+            {
+                throw new GameStateException(String.format("Player %s already in another game", ticket.playerId));
+            }
+            requeue(ticket);
+        }
+        catch (MissingPlayerException | GameStateException ex)
+        {
+            fail(ticket, ex);
+        }
+    }
+
+    private void requeue(Ticket ticket)
+    {
+        ticket.state.set(Ticket.WAITING);
+        queues[ticket.band].add(ticket);
+    }
+
+    private void complete(Ticket ticket, Game game)
+    {
+        tickets.remove(ticket.playerId, ticket);
+        ticket.state.set(Ticket.MATCHED);
+        ticket.match.complete(game);
+    }
+
+    private void expire(Ticket ticket)
+    {
+        fail(ticket, new TimeoutException(String.format("No match found for player %s", ticket.playerId)));
+    }
+
+    private void fail(Ticket ticket, Throwable ex)
+    {
+        tickets.remove(ticket.playerId, ticket);
+        ticket.state.set(Ticket.CANCELLED);
+        ticket.match.completeExceptionally(ex);
+    }
+
+    //a queued player; only the pairing pass moves a ticket out of MATCHING
+    private static final class Ticket
+    {
+        private static final int WAITING = 0;
+        private static final int MATCHING = 1;
+        private static final int MATCHED = 2;
+        private static final int CANCELLED = 3;
+
+        private final int playerId;
+        private final int band;
+        private final long enqueuedAt = System.currentTimeMillis();
+        private final CompletableFuture<Game> match = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile long deadline;
+
+        private Ticket(int playerId, int band, long deadline)
+        {
+            this.playerId = playerId;
+            this.band = band;
+            this.deadline = deadline;
+        }
+
+        //takes the ticket for the pairing pass, false if it was cancelled
+        private boolean claim()
+        {
+            return state.compareAndSet(WAITING, MATCHING);
+        }
+
+        //moves the deadline forward, false if the ticket is no longer queued
+        private boolean extend(long newDeadline)
+        {
+            if (state.get() >= MATCHED)
+            {
+                return false;
+            }
+            deadline = Math.max(deadline, newDeadline);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.exceptions.MissingGameException;
+import com.example.tictactoerest.views.MoveDelta;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets callers wait for the next move in a game without polling.
+ * Waiters are completed from the {@link MoveDelta} events published
+ * by GameService.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class MoveNotifier
+{
+    private GameService gameService;
+
+    //waiters by game id
+    private final ConcurrentMap<Integer, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a notifier that reads turns from the game service.
+     *
+     * @param gameService the service layer for Game objects
+     */
+    public MoveNotifier(GameService gameService)
+    {
+        this.gameService = gameService;
+    }
+
+    /**
+     * Returns a future that completes once the turn counter of a game is
+     * greater than the input turn. Cancel the future to stop waiting.
+     *
+     * @param gameId the game id
+     * @param turn the last turn seen by the caller
+     * @throws MissingGameException if the game is not found
+     * @return a future that completes with the new turn
+     */
+    public CompletableFuture<Integer> awaitTurnAfter(int gameId, int turn)
+    {
+        Waiter waiter = new Waiter(turn);
+        //added inside compute(), so a completing waiter cannot drop the set in between
+        waiters.compute(gameId, (id, waiting) -> {
+            waiting = waiting == null ? ConcurrentHashMap.newKeySet() : waiting;
+            waiting.add(waiter);
+            return waiting;
+        });
+        waiter.future.whenComplete((newTurn, ex) -> remove(gameId, waiter));
+
+        //a move made before the waiter was added would not complete it
+        int current;
+        try
+        {
+            current = gameService.getTurn(gameId);
+        }
+        catch (RuntimeException ex)
+        {
+            waiter.future.cancel(false);
+            throw ex;
+        }
+
+        if (current > turn)
+        {
+            waiter.future.complete(current);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * Completes the waiters of a game that are behind the move.
+     *
+     * @param delta the move that was made
+     */
+    @EventListener
+    public void onMove(MoveDelta delta)
+    {
+        Set<Waiter> waiting = waiters.get(delta.getGameId());
+        if (waiting == null)
+        {
+            return;
+        }
+
+        for (Waiter waiter : waiting)
+        {
+            if (delta.getTurn() > waiter.turn)
+            {
+                waiter.future.complete(delta.getTurn());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of callers waiting for a move.
+     *
+     * @return the number of waiters in all games
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Set<Waiter> waiting : waiters.values())
+        {
+            size += waiting.size();
+        }
+        return size;
+    }
+
+    private void remove(int gameId, Waiter waiter)
+    {
+        waiters.computeIfPresent(gameId, (id, waiting) -> {
+            waiting.remove(waiter);
+            return waiting.isEmpty() ? null : waiting;
+        });
+    }
+
+    //a caller waiting for a turn after the one it has seen
+    private static final class Waiter
+    {
+        private final int turn;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private Waiter(int turn)
+        {
+            this.turn = turn;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.views.PlayerName;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps player names sorted in memory, ignoring case, so players can
+ * be found by the start of their name without scanning every player.
+ * The index is built from the saved players on startup and updated as
+ * players are added, renamed or deleted.
+ *
+ * A search walks a concurrent skip list from the first name with the
+ * prefix, so it takes logarithmic time plus the number of names
+ * returned, and does not lock out updates.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class PlayerNameIndex
+{
+    //names ignoring case, then exact names, which are unique
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry entry) -> entry.folded)
+            .thenComparing(entry -> entry.name);
+
+    private IPlayerRepository playerRepo;
+
+    private final NavigableSet<Entry> sorted = new ConcurrentSkipListSet<>(ORDER);
+    private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an index of the saved player names.
+     *
+     * @param playerRepo the player data layer
+     */
+    public PlayerNameIndex(IPlayerRepository playerRepo)
+    {
+        this.playerRepo = playerRepo;
+    }
+
+    /**
+     * Loads the names of the saved players into the index.
+     */
+    @PostConstruct
+    public synchronized void rebuild()
+    {
+        sorted.clear();
+        entries.clear();
+        for (Player player : playerRepo.findAll())
+        {
+            save(player);
+        }
+    }
+
+    /**
+     * Returns the players whose names start with the input prefix,
+     * ignoring case.
+     *
+     * @param prefix the start of the name, or an empty string for all players
+     * @param limit the maximum number of players, up to GameService.MAX_PAGE_SIZE
+     * @return the matching players, in name order
+     */
+    public List<PlayerName> search(String prefix, int limit)
+    {
+        limit = Math.min(Math.max(limit, 1), GameService.MAX_PAGE_SIZE);
+        String folded = fold(prefix);
+
+        //the empty name sorts before every name with the same folded start
+        List<PlayerName> matches = new ArrayList<>(Math.min(limit, 64));
+        for (Entry entry : sorted.tailSet(new Entry(0, folded, ""), true))
+        {
+            if (matches.size() == limit || !entry.folded.startsWith(folded))
+            {
+                break;
+            }
+            matches.add(new PlayerName(entry.playerId, entry.name));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns true if a player has exactly the input name.
+     *
+     * @param name the name to look for
+     * @return true if the name is in use
+     */
+    public boolean contains(String name)
+    {
+        return name != null && sorted.contains(new Entry(0, fold(name), name));
+    }
+
+    /**
+     * Adds a new player, or updates the name of an existing one. Players
+     * without a name (e.g. rows saved before names were required) cannot
+     * be searched for, and are left out of the index.
+     *
+     * @param player the saved player
+     */
+    public synchronized void save(Player player)
+    {
+        if (player.getName() == null)
+        {
+            delete(player.getPlayerId());
+            return;
+        }
+
+        Entry entry = new Entry(player.getPlayerId(), fold(player.getName()), player.getName());
+        Entry old = entries.put(entry.playerId, entry);
+        if (old != null)
+        {
+            sorted.remove(old);
+        }
+        sorted.add(entry);
+    }
+
+    /**
+     * Removes a deleted player.
+     *
+     * @param playerId the player id
+     */
+    public synchronized void delete(int playerId)
+    {
+        Entry entry = entries.remove(playerId);
+        if (entry != null)
+        {
+            sorted.remove(entry);
+        }
+    }
+
+    /**
+     * Returns the number of players in the index.
+     *
+     * @return the number of players
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    //the form names are compared in; most names are already lower case and are not copied
+    private static String fold(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    //an immutable index row, replaced when the player is renamed
+    private static final class Entry
+    {
+        private final int playerId;
+        private final String folded;
+        private final String name;
+
+        private Entry(int playerId, String folded, String name)
+        {
+            this.playerId = playerId;
+            this.folded = folded;
+            this.name = name;
+        }
+    }
+}
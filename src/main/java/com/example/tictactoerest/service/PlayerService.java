@@ -1,16 +1,39 @@
 package com.example.tictactoerest.service;
 
 import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.GameStatus;
 import com.example.tictactoerest.entities.Player;
 import com.example.tictactoerest.exceptions.GameStateException;
 import com.example.tictactoerest.exceptions.InvalidNameException;
 import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.repositories.ActiveGameStore;
+import com.example.tictactoerest.repositories.GameArchive;
 import com.example.tictactoerest.repositories.IGameRepository;
 import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.repositories.PlayerCache;
+import com.example.tictactoerest.views.GamePage;
+import com.example.tictactoerest.views.ImportSummary;
+import com.example.tictactoerest.views.PlayerName;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Contains business logic for creating and tracking players
@@ -22,21 +45,52 @@ import java.util.Optional;
 @Service
 public class PlayerService
 {
+    //rows checked for duplicate names and saved together during an import
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
     private IPlayerRepository playerRepo;
+    private PlayerCache playerCache;
     private IGameRepository gameRepo;
+    private ActiveGameStore activeGames;
+    private LeaderboardService leaderboard;
+    private PlayerNameIndex names;
+    private ObjectMapper mapper;
+    private EntityManager entityManager;
+    private GameArchive archive;
 
     /**
      * Creates a new service layer with data layers for
      * games and players.
      *
      * @param playerRepo the player data layer
+     * @param playerCache players by id and name, in front of the player data layer
      * @param gameRepo the game data layer
+     * @param activeGames in-memory store for games being played
+     * @param leaderboard players ordered by wins
+     * @param names player names sorted for prefix searches
+     * @param mapper reads imported players
+     * @param entityManager the persistence context, cleared between import chunks
+     * @param archive the archived finished games, merged into game lists
      */
     public PlayerService(IPlayerRepository playerRepo,
-                         IGameRepository gameRepo)
+                         PlayerCache playerCache,
+                         IGameRepository gameRepo,
+                         ActiveGameStore activeGames,
+                         LeaderboardService leaderboard,
+                         PlayerNameIndex names,
+                         ObjectMapper mapper,
+                         EntityManager entityManager,
+                         GameArchive archive)
     {
         this.playerRepo = playerRepo;
+        this.playerCache = playerCache;
         this.gameRepo = gameRepo;
+        this.activeGames = activeGames;
+        this.leaderboard = leaderboard;
+        this.names = names;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        this.archive = archive;
     }
 
     /**
@@ -47,29 +101,297 @@ public class PlayerService
      */
     public List<Game> getGamesPlayed(Player player)
     {
-        return gameRepo.findAllByPlayerXEqualsOrPlayerOEquals(player, player);
+        List<Game> games = new ArrayList<>(activeGames.current(gameRepo.findAllByPlayerXEqualsOrPlayerOEquals(player, player)));
+        games.sort(Comparator.comparingInt(Game::getGameId));
+        return GameArchive.merge(games, archive.findByPlayer(player), false, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a page of games the input player was part of, newest first.
+     *
+     * @param player the player to search for
+     * @param before only games with a smaller id are returned
+     * @param limit the maximum number of games, up to GameService.MAX_PAGE_SIZE
+     * @param status only return active or finished games, or all games if null
+     * @return a page of games and the cursor of the next page
+     */
+    public GamePage getGamesPlayed(Player player, int before, int limit, GameStatus status)
+    {
+        limit = Math.min(Math.max(limit, 1), GameService.MAX_PAGE_SIZE);
+
+        //read one extra game to find out if there is another page
+        Pageable page = PageRequest.of(0, limit + 1);
+        List<Game> games;
+        if (status == GameStatus.ACTIVE)
+        {
+            //archived games are always finished
+            games = activeGames.current(gameRepo.findActiveHistoryBefore(player, before, page));
+        }
+        else if (status == GameStatus.FINISHED)
+        {
+            games = GameArchive.merge(activeGames.current(gameRepo.findFinishedHistoryBefore(player, before, page)),
+                    archive.findHistoryBefore(player, before, page), true, limit + 1);
+        }
+        else
+        {
+            games = GameArchive.merge(activeGames.current(gameRepo.findHistoryBefore(player, before, page)),
+                    archive.findHistoryBefore(player, before, page), true, limit + 1);
+        }
+
+        Integer next = null;
+        if (games.size() > limit)
+        {
+            games = games.subList(0, limit);
+            next = games.get(limit - 1).getGameId();
+        }
+        return new GamePage(games, next);
     }
 
     /**
      * Saves a new player to the api.
      *
      * @param player the new player
-     * @throws InvalidNameException if the name of the player is empty
+     * @throws InvalidNameException if the name of the player is missing or blank
      * @throws GameStateException if a duplicate name is found
      * @return the saved player after being persisted
      */
     public Player save(Player player)
     {
-        if (player.getName().isEmpty())
+        checkName(player.getName());
+        if (names.contains(player.getName()))
         {
-            throw new InvalidNameException("Name cannot be empty");
+            throw new GameStateException("Duplicate name found!");
         }
-        else if (playerByName(player.getName()).isPresent())
+
+        //the unique index on name settles saves of the same name that race past the check above
+        Player saved;
+        try
+        {
+            saved = playerRepo.save(player);
+        }
+        catch (DataIntegrityViolationException ex)
         {
             throw new GameStateException("Duplicate name found!");
         }
+        playerCache.put(saved);
+        leaderboard.save(saved);
+        names.save(saved);
+        return saved;
+    }
+
+    /**
+     * Saves players read from newline-delimited JSON, one player per line.
+     *
+     * @param in the players, as JSON objects with a name and optional wins,
+     *           losses and draws
+     * @return the number of players imported and skipped
+     */
+    public ImportSummary importJson(InputStream in)
+    {
+        return importPlayers(in, (line, lineNumber) -> mapper.readValue(line, Player.class));
+    }
+
+    /**
+     * Saves players read from CSV, one player per line. The first line is
+     * skipped if it is a header.
+     *
+     * @param in the players, as name[,wins,losses,draws] rows
+     * @return the number of players imported and skipped
+     */
+    public ImportSummary importCsv(InputStream in)
+    {
+        return importPlayers(in, (line, lineNumber) -> {
+            List<String> fields = splitCsv(line);
+            if (lineNumber == 1 && fields.get(0).equalsIgnoreCase("name"))
+            {
+                return null;
+            }
+            if (fields.size() != 1 && fields.size() != 4)
+            {
+                throw new IllegalArgumentException("Expected name[,wins,losses,draws]");
+            }
+
+            Player player = Player.builder().name(fields.get(0)).build();
+            if (fields.size() == 4)
+            {
+                player.setWins(Integer.parseInt(fields.get(1).trim()));
+                player.setLosses(Integer.parseInt(fields.get(2).trim()));
+                player.setDraws(Integer.parseInt(fields.get(3).trim()));
+            }
+            return player;
+        });
+    }
+
+    //reads the input a line at a time and saves the players in chunks, so
+    //memory use does not grow with the size of the import
+    private ImportSummary importPlayers(InputStream in, RowParser parser)
+    {
+        ImportSummary summary = new ImportSummary();
+        Map<String, Player> chunk = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+        {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                if (line.isBlank())
+                {
+                    continue;
+                }
+
+                Player player;
+                try
+                {
+                    player = parser.parse(line, lineNumber);
+                }
+                catch (IOException | RuntimeException ex)
+                {
+                    summary.setInvalid(summary.getInvalid() + 1);
+                    continue;
+                }
+
+                if (player == null)
+                {
+                    continue;
+                }
+                else if (!isImportable(player))
+                {
+                    summary.setInvalid(summary.getInvalid() + 1);
+                }
+                else if (chunk.putIfAbsent(player.getName(), player) != null)
+                {
+                    summary.setDuplicates(summary.getDuplicates() + 1);
+                }
+
+                if (chunk.size() == IMPORT_CHUNK_SIZE)
+                {
+                    saveChunk(chunk, summary);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+
+        saveChunk(chunk, summary);
+        return summary;
+    }
+
+    //saves the players with new names in one batch and empties the chunk
+    private void saveChunk(Map<String, Player> chunk, ImportSummary summary)
+    {
+        if (chunk.isEmpty())
+        {
+            return;
+        }
+
+        //one query finds names saved before the import and by earlier chunks
+        Set<String> taken = playerRepo.findNamesIn(chunk.keySet());
+        List<Player> players = new ArrayList<>(chunk.size());
+        for (Player player : chunk.values())
+        {
+            if (taken.contains(player.getName()))
+            {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+            }
+            else
+            {
+                //ids are always generated
+                player.setPlayerId(0);
+                players.add(player);
+            }
+        }
+
+        try
+        {
+            for (Player saved : playerRepo.saveAll(players))
+            {
+                leaderboard.save(saved);
+                names.save(saved);
+            }
+            summary.setImported(summary.getImported() + players.size());
+        }
+        catch (DataIntegrityViolationException ex)
+        {
+            //a name was saved since it was checked, so find it by saving one player at a time
+            saveEach(players, summary);
+        }
+
+        //the saved players are not read again, so they are not kept in the session
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    //saves players one at a time, counting the names saved since they were checked as duplicates
+    private void saveEach(List<Player> players, ImportSummary summary)
+    {
+        for (Player player : players)
+        {
+            try
+            {
+                //the failed batch may have given the player an id
+                player.setPlayerId(0);
+                Player saved = playerRepo.save(player);
+                leaderboard.save(saved);
+                names.save(saved);
+                summary.setImported(summary.getImported() + 1);
+            }
+            catch (DataIntegrityViolationException ex)
+            {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+            }
+        }
+    }
 
-        return playerRepo.save(player);
+    private static boolean isImportable(Player player)
+    {
+        return player.getName() != null && !player.getName().isBlank() &&
+               player.getWins() >= 0 && player.getLosses() >= 0 && player.getDraws() >= 0;
+    }
+
+    //splits a CSV row on commas, except inside double quotes ("" is a quote)
+    private static List<String> splitCsv(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (c == '"' && quoted && i + 1 < line.length() && line.charAt(i + 1) == '"')
+            {
+                field.append('"');
+                i++;
+            }
+            else if (c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if (c == ',' && !quoted)
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+
+        if (quoted)
+        {
+            throw new IllegalArgumentException("Unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    //reads a single player from a line of input, or returns null to skip the line
+    private interface RowParser
+    {
+        Player parse(String line, int lineNumber) throws IOException;
     }
 
     /**
@@ -89,7 +411,7 @@ public class PlayerService
      */
     public Player playerById(int playerId)
     {
-        Optional<Player> player = playerRepo.findById(playerId);
+        Optional<Player> player = playerCache.findById(playerId);
         if (player.isEmpty())
         {
             throw new MissingPlayerException(String.format("Player with id %s missing", playerId));
@@ -105,27 +427,58 @@ public class PlayerService
      */
     public Optional<Player> playerByName(String name)
     {
-        return playerRepo.findByNameEquals(name);
+        return playerCache.findByName(name);
+    }
+
+    /**
+     * Returns the players whose names start with the input prefix,
+     * ignoring case.
+     *
+     * @param prefix the start of the name
+     * @param limit the maximum number of players, up to GameService.MAX_PAGE_SIZE
+     * @return the matching players, in name order
+     */
+    public List<PlayerName> search(String prefix, int limit)
+    {
+        return names.search(prefix, limit);
     }
 
     /**
      * Updates a player object.
      *
      * @param updatedPlayer the updated player object
+     * @throws InvalidNameException if the new name is missing or blank
      * @throws MissingPlayerException if the player is not found
+     * @throws GameStateException if another player has the new name
      * @return the saved player object with updated values
      */
     public Player updatePlayer(Player updatedPlayer)
     {
+        //checked before the update, so a bad name never reaches the data layer
+        checkName(updatedPlayer.getName());
         int playerId = updatedPlayer.getPlayerId();
-        Optional<Player> savedPlayer = playerRepo.findById(playerId);
+
+        //only the name is written, so stats recorded by games finishing meanwhile are kept
+        int renamed;
+        try
+        {
+            renamed = playerRepo.rename(playerId, updatedPlayer.getName());
+        }
+        catch (DataIntegrityViolationException ex)
+        {
+            throw new GameStateException("Duplicate name found!");
+        }
+
+        Optional<Player> savedPlayer = renamed == 0 ? Optional.empty() : playerRepo.findById(playerId);
         if (savedPlayer.isEmpty())
         {
             throw new MissingPlayerException(String.format("Player with id %s missing", playerId));
         }
-        Player player = savedPlayer.get();
-        player.setName(updatedPlayer.getName());
-        return playerRepo.save(player);
+        Player saved = savedPlayer.get();
+        playerCache.put(saved);
+        leaderboard.save(saved);
+        names.save(saved);
+        return saved;
     }
 
     /**
@@ -139,7 +492,25 @@ public class PlayerService
         {
             throw new MissingPlayerException(String.format("Player with id %s missing", playerId));
         }
+
+        //archived games keep player ids without a foreign key, so check them the same way
+        if (archive.hasGames(playerId))
+        {
+            throw new DataIntegrityViolationException(String.format("Player %s is in an archived game", playerId));
+        }
         playerRepo.deleteById(playerId);
+        playerCache.evict(playerId);
+        leaderboard.delete(playerId);
+        names.delete(playerId);
+    }
+
+    //the same check for new players and renames, so no player is saved without a name
+    private static void checkName(String name)
+    {
+        if (name == null || name.isBlank())
+        {
+            throw new InvalidNameException("Name cannot be empty");
+        }
     }
 
     @Override
@@ -0,0 +1,81 @@
+package com.example.tictactoerest.views;
+
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.IllegalMoveException;
+import com.example.tictactoerest.exceptions.MissingGameException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Represents the result of one item in a batch request. The status is
+ * the code the single-item endpoint would have returned, with either
+ * the game or an error message.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BatchResult.class);
+
+    private int status;
+    private Game game;
+    private String error;
+
+    /**
+     * Returns a successful result.
+     *
+     * @param status the status code
+     * @param game the created or updated game
+     * @return a new result
+     */
+    public static BatchResult success(HttpStatus status, Game game)
+    {
+        return new BatchResult(status.value(), game, null);
+    }
+
+    /**
+     * Returns a failed result with the status code for the exception.
+     * Unexpected exceptions, such as a failed database call, give status
+     * code 500 (INTERNAL SERVER ERROR) and are logged, so the rest of the
+     * batch is still processed.
+     *
+     * @param ex the reason the item failed
+     * @return a new result
+     */
+    public static BatchResult failure(RuntimeException ex)
+    {
+        HttpStatus status;
+        if (ex instanceof MissingGameException || ex instanceof MissingPlayerException)
+        {
+            status = HttpStatus.NOT_FOUND;
+        }
+        else if (ex instanceof IllegalMoveException || ex instanceof GameStateException)
+        {
+            status = HttpStatus.BAD_REQUEST;
+        }
+        else if (ex instanceof OptimisticLockingFailureException)
+        {
+            status = HttpStatus.CONFLICT;
+        }
+        else
+        {
+            LOG.error("Batch item failed", ex);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            return new BatchResult(status.value(), null, status.getReasonPhrase());
+        }
+        return new BatchResult(status.value(), null, ex.getMessage());
+    }
+}
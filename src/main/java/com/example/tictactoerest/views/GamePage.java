@@ -0,0 +1,28 @@
+package com.example.tictactoerest.views;
+
+import com.example.tictactoerest.entities.Game;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents one page of games, ordered by game id.
+ * Use the next cursor to request the following page.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class GamePage
+{
+    private List<Game> games;
+
+    //the cursor of the next page, null on the last page
+    private Integer next;
+}
@@ -0,0 +1,30 @@
+package com.example.tictactoerest.views;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the result of a bulk player import. Rows are saved
+ * in chunks, so an import that fails part way can be sent again:
+ * the players saved the first time are counted as duplicates.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportSummary
+{
+    //new players saved
+    private int imported;
+
+    //rows with a name that is already in use, or used earlier in the import
+    private int duplicates;
+
+    //rows that could not be read, or with an empty name or negative stats
+    private int invalid;
+}
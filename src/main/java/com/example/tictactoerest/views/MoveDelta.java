@@ -0,0 +1,32 @@
+package com.example.tictactoerest.views;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a single move that was made in a game, and the state of
+ * the game after it. Published by GameService for every move, so
+ * connected players can be sent the move instead of the whole game.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MoveDelta
+{
+    private int gameId;
+
+    //the turn counter after the move, one more than the turn it was made on
+    private int turn;
+    private int playerId;
+    private int row;
+    private int col;
+    private char token;
+    private boolean draw;
+    private boolean gameOver;
+}
@@ -0,0 +1,27 @@
+package com.example.tictactoerest.views;
+
+import com.example.tictactoerest.engine.Outcome;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the best move for the player whose turn it is,
+ * and the result of the game if both players play perfectly.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MoveEvaluation
+{
+    private int gameId;
+    private int playerId;
+    private int row;
+    private int col;
+    private Outcome outcome;
+}
@@ -0,0 +1,22 @@
+package com.example.tictactoerest.views;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a player found by a name search.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PlayerName
+{
+    private int playerId;
+    private String name;
+}
@@ -0,0 +1,30 @@
+package com.example.tictactoerest.views;
+
+import com.example.tictactoerest.commands.GameMove;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents a game rebuilt from the move log, up to a given ply.
+ * The moves are in the order they were made, starting with player X.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class Replay
+{
+    private int gameId;
+    private int ply; //the number of moves replayed
+    private char[] gameState;
+    private boolean draw;
+    private boolean gameOver;
+    private List<GameMove> moves;
+}
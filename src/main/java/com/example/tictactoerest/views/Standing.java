@@ -0,0 +1,28 @@
+package com.example.tictactoerest.views;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents the place of a player on the leaderboard. Players are
+ * ranked by wins, and players with the same number of wins share
+ * a rank.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class Standing
+{
+    private int rank;
+    private int playerId;
+    private String name;
+    private int wins;
+    private int losses;
+    private int draws;
+}
@@ -0,0 +1,41 @@
+-- Moves the board of each saved game into the packed board column
+-- (x mask in bits 0-8, o mask in bits 9-17, see BitBoardConverter).
+-- Run once against the PostgreSQL database before starting this version.
+
+BEGIN;
+
+ALTER TABLE game ADD COLUMN IF NOT EXISTS board INTEGER;
+
+-- games saved with the two mask columns
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'game' AND column_name = 'x_mask') THEN
+        UPDATE game SET board = x_mask | (o_mask << 9)
+        WHERE board IS NULL AND x_mask IS NOT NULL;
+    END IF;
+END $$;
+
+-- games saved with the board as 9 characters of 'x', 'o' and ' '
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'game' AND column_name = 'game_state') THEN
+        UPDATE game SET board = (
+            SELECT COALESCE(SUM(CASE substr(game.game_state, i + 1, 1)
+                                    WHEN 'x' THEN 1 << i
+                                    WHEN 'o' THEN 1 << (i + 9)
+                                    ELSE 0 END), 0)
+            FROM generate_series(0, 8) AS i)
+        WHERE board IS NULL;
+    END IF;
+END $$;
+
+UPDATE game SET board = 0 WHERE board IS NULL;
+ALTER TABLE game ALTER COLUMN board SET NOT NULL;
+
+ALTER TABLE game DROP COLUMN IF EXISTS x_mask;
+ALTER TABLE game DROP COLUMN IF EXISTS o_mask;
+ALTER TABLE game DROP COLUMN IF EXISTS game_state;
+
+COMMIT;
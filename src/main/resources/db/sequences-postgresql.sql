@@ -0,0 +1,44 @@
+-- Creates the id sequences that Player, Game and MoveEvent reserve ids
+-- from in blocks of 50 (allocationSize), so inserts can be batched.
+-- Older databases gave players and games identity ids, so each sequence
+-- must start past the ids already saved.
+-- Run once against the PostgreSQL database before starting this version;
+-- it can be run again, e.g. if Hibernate already created the sequences.
+--
+-- Hibernate's pooled optimizer treats each value read from a sequence as
+-- the top of a block and hands out the 49 ids below it, so the next value
+-- is set to the highest saved id + 50: the first block starts at max + 1.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS player_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS game_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS move_event_seq INCREMENT BY 50;
+ALTER SEQUENCE player_seq INCREMENT BY 50;
+ALTER SEQUENCE game_seq INCREMENT BY 50;
+ALTER SEQUENCE move_event_seq INCREMENT BY 50;
+
+DO $$
+DECLARE
+    max_id BIGINT;
+BEGIN
+    SELECT COALESCE(MAX(player_id), 0) INTO max_id FROM player;
+    PERFORM setval('player_seq', max_id + 50, false);
+
+    -- archived games keep the id they had in the game table
+    SELECT COALESCE(MAX(game_id), 0) INTO max_id FROM game;
+    IF to_regclass('archived_game') IS NOT NULL THEN
+        EXECUTE 'SELECT GREATEST($1, COALESCE(MAX(game_id), 0)) FROM archived_game'
+            INTO max_id USING max_id;
+    END IF;
+    PERFORM setval('game_seq', max_id + 50, false);
+
+    -- the move log is new in this version, so it may not exist yet
+    max_id := 0;
+    IF to_regclass('move_event') IS NOT NULL THEN
+        EXECUTE 'SELECT COALESCE(MAX(event_id), 0) FROM move_event' INTO max_id;
+    END IF;
+    PERFORM setval('move_event_seq', max_id + 50, false);
+END $$;
+
+COMMIT;
@@ -0,0 +1,15 @@
+-- Adds the unique index on player names that new saves rely on to
+-- reject duplicate names (see Player and PlayerService.save).
+-- Run once against the PostgreSQL database before starting this version.
+
+BEGIN;
+
+-- names saved twice before the index existed: the oldest player keeps
+-- the name and the others get their id appended, e.g. "sam-42"
+UPDATE player SET name = player.name || '-' || player.player_id
+FROM player AS first
+WHERE first.name = player.name AND first.player_id < player.player_id;
+
+ALTER TABLE player ADD CONSTRAINT uk_player_name UNIQUE (name);
+
+COMMIT;
@@ -0,0 +1,63 @@
+package com.example.tictactoereactive;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.connectionfactory.init.ConnectionFactoryInitializer;
+import org.springframework.data.r2dbc.connectionfactory.init.ResourceDatabasePopulator;
+
+/**
+ * Entry point to the WebFlux variant of the Web API. It serves the core
+ * player and game routes of the main application with the same status
+ * codes, on Netty, with R2DBC against an in-memory H2 database, so the
+ * two stacks can be compared under load.
+ *
+ * Build and run it with the reactive profile: mvn -P reactive spring-boot:run
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@SpringBootApplication
+public class ReactiveTicTacToeApplication
+{
+    /**
+     * Starts the Spring Boot application with reactive.properties.
+     * @param args command-line args
+     */
+    public static void main(String[] args)
+    {
+        new SpringApplicationBuilder(ReactiveTicTacToeApplication.class)
+                .properties("spring.config.name=reactive")
+                .run(args);
+    }
+
+    /**
+     * Serves requests with Netty. Tomcat is on the classpath for the main
+     * application and would otherwise be chosen.
+     *
+     * @return the Netty server factory
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory()
+    {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Creates the tables when the application starts.
+     *
+     * @param connectionFactory the R2DBC connections
+     * @return an initializer that runs reactive-schema.sql
+     */
+    @Bean
+    public ConnectionFactoryInitializer schemaInitializer(ConnectionFactory connectionFactory)
+    {
+        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(connectionFactory);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("reactive-schema.sql")));
+        return initializer;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.tictactoereactive.api;
+
+import com.example.tictactoereactive.service.ReactiveGameService;
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.IllegalMoveException;
+import com.example.tictactoerest.exceptions.MissingGameException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.GameService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import static com.example.tictactoereactive.api.ReactivePlayerController.status;
+
+/**
+ * Reactive API endpoint for games, with the routes and status codes of
+ * the main application's game endpoint. Batches, search, streaming,
+ * long-polling, evaluation and replay are only served by the main
+ * application.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("api/v1/game") //our endpoint
+@CrossOrigin(origins = "*")
+public class ReactiveGameController
+{
+    private ReactiveGameService service;
+
+    /**
+     * Inject the service for interacting with Game objects.
+     *
+     * @param service the reactive service layer for Game objects
+     */
+    public ReactiveGameController(ReactiveGameService service)
+    {
+        this.service = service;
+    }
+
+    //CREATE **********************************************
+    //*****************************************************
+
+    /**
+     * Starts a new tictactoe game.
+     *
+     * @param matchUp the id of the players that are playing in the game
+     * @return status code 201 (CREATED) if successful
+     *         status code 404 (NOT FOUND) if a player is not found
+     *         status code 400 (BAD REQUEST) if a player is already in a game
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Object>> newGame(@RequestBody MatchUp matchUp)
+    {
+        return service.newGame(matchUp.getPlayerXId(), matchUp.getPlayerOId())
+                .map(game -> new ResponseEntity<Object>(game, HttpStatus.CREATED))
+                .onErrorResume(MissingPlayerException.class, ex -> status(ex, HttpStatus.NOT_FOUND))
+                .onErrorResume(GameStateException.class, ex -> status(ex, HttpStatus.BAD_REQUEST));
+    }
+
+    //READ ************************************************
+    //*****************************************************
+
+    /**
+     * Returns all games in id order, or a single page of games if a limit
+     * or cursor is given.
+     *
+     * @param limit the maximum number of games in the page
+     * @param after the cursor returned with the previous page
+     * @return a list of all Game objects, or a page of Game objects
+     *         with the next cursor, and status code 200 (OK)
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Object>> games(@RequestParam(required = false) Integer limit,
+                                              @RequestParam(required = false) Integer after)
+    {
+        if (limit == null && after == null)
+        {
+            return service.games().map(games -> new ResponseEntity<>(games, HttpStatus.OK));
+        }
+
+        int pageSize = limit == null ? GameService.MAX_PAGE_SIZE : limit;
+        return service.games(after == null ? 0 : after, pageSize).map(page -> new ResponseEntity<>(page, HttpStatus.OK));
+    }
+
+    /**
+     * Returns a Game object by id.
+     *
+     * @param gameId the game id
+     * @return the Game object with status code 200 (OK),
+     *         status code 404 (NOT FOUND) if the game is not found
+     */
+    @GetMapping("{gameId}")
+    public Mono<ResponseEntity<Object>> getById(@PathVariable int gameId)
+    {
+        return service.findById(gameId)
+                .map(game -> new ResponseEntity<Object>(game, HttpStatus.OK))
+                .onErrorResume(MissingGameException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    //UPDATE **********************************************
+    //*****************************************************
+
+    /**
+     * Updates a Game object given a player move.
+     *
+     * @param gameId the id of the game
+     * @param move a player move in the game
+     * @return status code 200 (OK) if successful,
+     *         status code 404 (NOT FOUND) if a player or game is not found
+     *         status code 400 (BAD REQUEST) if the move is illegal
+     *         status code 409 (CONFLICT) if the game was changed by another request
+     */
+    @PutMapping("{gameId}")
+    public Mono<ResponseEntity<Object>> move(@PathVariable int gameId, @RequestBody GameMove move)
+    {
+        return service.move(gameId, move)
+                .map(game -> new ResponseEntity<Object>(game, HttpStatus.OK))
+                .onErrorResume(ex -> ex instanceof MissingGameException || ex instanceof MissingPlayerException,
+                        ex -> status(ex, HttpStatus.NOT_FOUND))
+                .onErrorResume(IllegalMoveException.class, ex -> status(ex, HttpStatus.BAD_REQUEST))
+                .onErrorResume(OptimisticLockingFailureException.class,
+                        ex -> Mono.just(new ResponseEntity<>(String.format("Game with id %s was changed, try again", gameId),
+                                HttpStatus.CONFLICT)));
+    }
+
+    //DELETE **********************************************
+    //*****************************************************
+
+    /**
+     * Deletes a Game object.
+     * @param gameId the id of the game
+     * @return status code 200 (OK) or if the game does not exist
+     *         status code 404 (NOT FOUND)
+     */
+    @DeleteMapping("{gameId}")
+    public Mono<ResponseEntity<Object>> deleteById(@PathVariable int gameId)
+    {
+        return service.deleteById(gameId)
+                .then(Mono.just(new ResponseEntity<>(HttpStatus.OK)))
+                .onErrorResume(MissingGameException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Reactive game controller";
+    }
+}
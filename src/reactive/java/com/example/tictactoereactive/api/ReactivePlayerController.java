@@ -0,0 +1,181 @@
+package com.example.tictactoereactive.api;
+
+import com.example.tictactoereactive.service.ReactivePlayerService;
+import com.example.tictactoerest.entities.GameStatus;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.InvalidNameException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.GameService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Reactive API endpoint for players, with the routes and status codes
+ * of the main application's player endpoint (without imports).
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@RestController
+@RequestMapping("api/v1/player") //our endpoint
+@CrossOrigin(origins = "*")
+public class ReactivePlayerController
+{
+    private ReactivePlayerService service;
+
+    /**
+     * Inject the service for interacting with Player objects.
+     *
+     * @param service the reactive service layer for Player objects
+     */
+    public ReactivePlayerController(ReactivePlayerService service)
+    {
+        this.service = service;
+    }
+
+    //CREATE **********************************************
+    //*****************************************************
+
+    /**
+     * Saves a new player to the api.
+     *
+     * @param player the new player
+     * @return status code 201 (CREATED) if successfully created
+     *         status code 400 (BAD REQUEST) if the name is empty of already in use
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Object>> savePlayer(@RequestBody Player player)
+    {
+        return service.save(player)
+                .map(saved -> new ResponseEntity<Object>(saved, HttpStatus.CREATED))
+                .onErrorResume(ex -> ex instanceof GameStateException || ex instanceof InvalidNameException,
+                        ex -> status(ex, HttpStatus.BAD_REQUEST));
+    }
+
+    //READ ************************************************
+    //*****************************************************
+
+    /**
+     * Returns all players in the api
+     * @return a list of players in the api with status code 200 (OK)
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<Player>>> players()
+    {
+        return service.players().map(players -> new ResponseEntity<>(players, HttpStatus.OK));
+    }
+
+    /**
+     * Returns a player with the input id.
+     *
+     * @param playerId the id of the player
+     * @return the player and status code 200 (OK) if found,
+     *         otherwise 404 (NOT FOUND) if no player found
+     */
+    @GetMapping("{playerId}")
+    public Mono<ResponseEntity<Object>> getById(@PathVariable int playerId)
+    {
+        return service.playerById(playerId)
+                .map(player -> new ResponseEntity<Object>(player, HttpStatus.OK))
+                .onErrorResume(MissingPlayerException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Returns a list of games that a player was involved in. If a limit,
+     * cursor or status is given, returns a single page of games, newest
+     * first, instead.
+     *
+     * @param playerId the id of the player whose game history we are retrieving
+     * @param limit the maximum number of games in the page
+     * @param before the cursor returned with the previous page
+     * @param status "active" or "finished" to only return those games
+     * @return a list of Game objects, or a page of Game objects with the next
+     *         cursor, and status code 200 (OK) if the player is found,
+     *         status code 404 (NOT FOUND) if the player is not found
+     *         status code 400 (BAD REQUEST) if the status is not recognized
+     */
+    @GetMapping("{playerId}/history")
+    public Mono<ResponseEntity<Object>> gamesPlayed(@PathVariable int playerId,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) Integer before,
+                                                    @RequestParam(required = false) String status)
+    {
+        GameStatus gameStatus;
+        try
+        {
+            gameStatus = status == null ? null : GameStatus.valueOf(status.toUpperCase());
+        }
+        catch (IllegalArgumentException ex)
+        {
+            return Mono.just(new ResponseEntity<>(String.format("Unknown game status %s", status), HttpStatus.BAD_REQUEST));
+        }
+
+        return service.playerById(playerId)
+                .flatMap(player -> {
+                    if (limit == null && before == null && status == null)
+                    {
+                        return service.getGamesPlayed(player).<Object>map(games -> games);
+                    }
+                    return service.getGamesPlayed(player,
+                            before == null ? Integer.MAX_VALUE : before,
+                            limit == null ? GameService.MAX_PAGE_SIZE : limit,
+                            gameStatus);
+                })
+                .map(games -> new ResponseEntity<>(games, HttpStatus.OK))
+                .onErrorResume(MissingPlayerException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    //UPDATE **********************************************
+    //*****************************************************
+
+    /**
+     * Updates a Player object.
+     *
+     * @param updatedPlayer the updated player object
+     * @return an updated Player and status code 200 (OK),
+     *         otherwise status code 404 (NOT FOUND) if the player
+     *         does not exist already in the api
+     */
+    @PutMapping
+    public Mono<ResponseEntity<Object>> update(Player updatedPlayer)
+    {
+        return service.updatePlayer(updatedPlayer)
+                .map(player -> new ResponseEntity<Object>(player, HttpStatus.OK))
+                .onErrorResume(MissingPlayerException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    //DELETE **********************************************
+    //*****************************************************
+
+    /**
+     * Deletes a player by id.
+     *
+     * @param playerId the player id
+     * @return status code 200 (OK) if the player is found and deleted,
+     *         otherwise status code 404 (NOT FOUND)
+     */
+    @DeleteMapping("{playerId}")
+    public Mono<ResponseEntity<Object>> deleteById(@PathVariable int playerId)
+    {
+        return service.deletePlayer(playerId)
+                .then(Mono.just(new ResponseEntity<>(HttpStatus.OK)))
+                .onErrorResume(MissingPlayerException.class, ex -> status(ex, HttpStatus.NOT_FOUND));
+    }
+
+    //the message of an exception with a status code
+    static Mono<ResponseEntity<Object>> status(Throwable ex, HttpStatus status)
+    {
+        return Mono.just(new ResponseEntity<>(ex.getMessage(), status));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Reactive player controller";
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.tictactoereactive.entities;
+
+import com.example.tictactoerest.entities.BitBoard;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the game table, read and written with R2DBC. The players are
+ * saved by id and the board as one packed integer (see BitBoard.pack()).
+ * Moves are made on a {@link Game}, so the rules and the JSON are the
+ * same as in the main application.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table("game")
+public class GameRow
+{
+    @Id
+    private Integer gameId; //null until the row is inserted
+    private int playerXId;
+    private int playerOId;
+    private int board;
+    private int turn;
+    private boolean gameover;
+    private boolean draw;
+
+    @Version
+    private Integer version; //guards against lost updates from concurrent moves
+
+    /**
+     * Returns a row with the values of a game. A game id of 0 is treated
+     * as a new game.
+     *
+     * @param game the game
+     * @param version the version the game was read with, or null for a new game
+     * @return a new GameRow object
+     */
+    public static GameRow of(Game game, Integer version)
+    {
+        return GameRow.builder()
+                .gameId(game.getGameId() == 0 ? null : game.getGameId())
+                .playerXId(game.getPlayerX().getPlayerId())
+                .playerOId(game.getPlayerO().getPlayerId())
+                .board(game.getBoard().pack())
+                .turn(game.getTurn())
+                .gameover(game.isGameOver())
+                .draw(game.isDraw())
+                .version(version)
+                .build();
+    }
+
+    /**
+     * Returns the game saved in this row.
+     *
+     * @param playerX the player with id playerXId
+     * @param playerO the player with id playerOId
+     * @return a new Game object
+     */
+    public Game toGame(Player playerX, Player playerO)
+    {
+        return Game.builder()
+                .gameId(gameId)
+                .board(BitBoard.unpack(board))
+                .playerX(playerX)
+                .playerO(playerO)
+                .turn(turn)
+                .gameover(gameover)
+                .draw(draw)
+                .version(version)
+                .build();
+    }
+}
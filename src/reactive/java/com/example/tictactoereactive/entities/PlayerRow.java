@@ -0,0 +1,55 @@
+package com.example.tictactoereactive.entities;
+
+import com.example.tictactoerest.entities.Player;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the player table, read and written with R2DBC. Responses use
+ * {@link Player}, so they have the same JSON as the main application.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table("player")
+public class PlayerRow
+{
+    @Id
+    private Integer playerId; //null until the row is inserted
+    private String name;
+
+    private int wins = 0;
+    private int losses = 0;
+    private int draws = 0;
+
+    /**
+     * Returns a row with the values of a player. A player id of 0 is
+     * treated as a new player.
+     *
+     * @param player the player
+     * @return a new PlayerRow object
+     */
+    public static PlayerRow of(Player player)
+    {
+        return new PlayerRow(player.getPlayerId() == 0 ? null : player.getPlayerId(),
+                player.getName(), player.getWins(), player.getLosses(), player.getDraws());
+    }
+
+    /**
+     * Returns the player saved in this row.
+     *
+     * @return a new Player object
+     */
+    public Player toPlayer()
+    {
+        return new Player(playerId, name, wins, losses, draws);
+    }
+}
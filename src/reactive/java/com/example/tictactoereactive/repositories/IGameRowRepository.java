@@ -0,0 +1,94 @@
+package com.example.tictactoereactive.repositories;
+
+import com.example.tictactoereactive.entities.GameRow;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive data layer for games.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Repository
+public interface IGameRowRepository extends ReactiveCrudRepository<GameRow, Integer>
+{
+    /**
+     * Returns all games in id order.
+     *
+     * @return the games
+     */
+    @Query("SELECT * FROM game ORDER BY game_id")
+    Flux<GameRow> findAllInOrder();
+
+    /**
+     * Returns a page of games with an id greater than the input id, in id order.
+     *
+     * @param gameId the last game id seen by the caller
+     * @param limit the number of games to return
+     * @return the games
+     */
+    @Query("SELECT * FROM game WHERE game_id > :gameId ORDER BY game_id LIMIT :limit")
+    Flux<GameRow> findPageAfter(int gameId, int limit);
+
+    /**
+     * Returns whether a player is in a game that is still being played.
+     *
+     * @param playerId the player id
+     * @return true if the player is in an active game, otherwise false
+     */
+    @Query("SELECT COUNT(*) > 0 FROM game " +
+           "WHERE (player_x_id = :playerId OR player_o_id = :playerId) AND gameover = FALSE AND draw = FALSE")
+    Mono<Boolean> existsActiveGame(int playerId);
+
+    /**
+     * Returns the games of a player in id order.
+     *
+     * @param playerId the player id
+     * @return the games with the player
+     */
+    @Query("SELECT * FROM game WHERE player_x_id = :playerId OR player_o_id = :playerId ORDER BY game_id")
+    Flux<GameRow> findByPlayer(int playerId);
+
+    /**
+     * Returns the games of a player with an id less than the input id,
+     * newest first.
+     *
+     * @param playerId the player id
+     * @param gameId the last game id seen by the caller
+     * @param limit the number of games to return
+     * @return the games with the player
+     */
+    @Query("SELECT * FROM game WHERE (player_x_id = :playerId OR player_o_id = :playerId) AND game_id < :gameId " +
+           "ORDER BY game_id DESC LIMIT :limit")
+    Flux<GameRow> findHistoryBefore(int playerId, int gameId, int limit);
+
+    /**
+     * Returns the active games of a player with an id less than the
+     * input id, newest first.
+     *
+     * @param playerId the player id
+     * @param gameId the last game id seen by the caller
+     * @param limit the number of games to return
+     * @return the games with the player
+     */
+    @Query("SELECT * FROM game WHERE (player_x_id = :playerId OR player_o_id = :playerId) AND game_id < :gameId " +
+           "AND gameover = FALSE AND draw = FALSE ORDER BY game_id DESC LIMIT :limit")
+    Flux<GameRow> findActiveHistoryBefore(int playerId, int gameId, int limit);
+
+    /**
+     * Returns the finished games of a player with an id less than the
+     * input id, newest first.
+     *
+     * @param playerId the player id
+     * @param gameId the last game id seen by the caller
+     * @param limit the number of games to return
+     * @return the games with the player
+     */
+    @Query("SELECT * FROM game WHERE (player_x_id = :playerId OR player_o_id = :playerId) AND game_id < :gameId " +
+           "AND (gameover = TRUE OR draw = TRUE) ORDER BY game_id DESC LIMIT :limit")
+    Flux<GameRow> findFinishedHistoryBefore(int playerId, int gameId, int limit);
+}
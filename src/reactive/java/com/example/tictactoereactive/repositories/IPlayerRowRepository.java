@@ -0,0 +1,54 @@
+package com.example.tictactoereactive.repositories;
+
+import com.example.tictactoereactive.entities.PlayerRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive data layer for players.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Repository
+public interface IPlayerRowRepository extends ReactiveCrudRepository<PlayerRow, Integer>
+{
+    /**
+     * Searches for a player by name.
+     *
+     * @param name the name to search for
+     * @return the player, or an empty Mono if not found
+     */
+    @Query("SELECT * FROM player WHERE name = :name")
+    Mono<PlayerRow> findByName(String name);
+
+    /**
+     * Adds a win to one player and a loss to another in a single update,
+     * without reading the players first.
+     *
+     * @param winnerId the id of the player who won
+     * @param loserId the id of the player who lost
+     * @return the number of players updated
+     */
+    @Modifying
+    @Query("UPDATE player SET " +
+           "wins = wins + CASE WHEN player_id = :winnerId THEN 1 ELSE 0 END, " +
+           "losses = losses + CASE WHEN player_id = :loserId THEN 1 ELSE 0 END " +
+           "WHERE player_id IN (:winnerId, :loserId)")
+    Mono<Integer> recordWin(int winnerId, int loserId);
+
+    /**
+     * Adds a draw to two players in a single update, without reading
+     * the players first.
+     *
+     * @param playerId the id of one player
+     * @param otherId the id of the other player
+     * @return the number of players updated
+     */
+    @Modifying
+    @Query("UPDATE player SET draws = draws + 1 WHERE player_id IN (:playerId, :otherId)")
+    Mono<Integer> recordDraw(int playerId, int otherId);
+}
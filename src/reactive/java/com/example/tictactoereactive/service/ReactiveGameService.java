@@ -0,0 +1,304 @@
+package com.example.tictactoereactive.service;
+
+import com.example.tictactoereactive.entities.GameRow;
+import com.example.tictactoereactive.entities.PlayerRow;
+import com.example.tictactoereactive.repositories.IGameRowRepository;
+import com.example.tictactoereactive.repositories.IPlayerRowRepository;
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.IllegalMoveException;
+import com.example.tictactoerest.exceptions.MissingGameException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.GameService;
+import com.example.tictactoerest.views.GamePage;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The reactive service layer for games. It follows {@link GameService}
+ * for the core routes, with two differences: every read and write goes
+ * to the database (there is no in-memory store of active games), and
+ * concurrent moves in the same game are not queued but rejected by the
+ * version check, with an OptimisticLockingFailureException.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class ReactiveGameService
+{
+    private IGameRowRepository gameRepo;
+    private IPlayerRowRepository playerRepo;
+
+    /**
+     * Creates a service over the reactive data layers.
+     *
+     * @param gameRepo the game data layer
+     * @param playerRepo the player data layer
+     */
+    public ReactiveGameService(IGameRowRepository gameRepo, IPlayerRowRepository playerRepo)
+    {
+        this.gameRepo = gameRepo;
+        this.playerRepo = playerRepo;
+    }
+
+    /**
+     * Returns a player with the matching id.
+     *
+     * @param playerId the player id
+     * @return the player, or a MissingPlayerException if not found
+     */
+    public Mono<Player> getPlayerById(int playerId)
+    {
+        return playerRepo.findById(playerId)
+                .map(PlayerRow::toPlayer)
+                .switchIfEmpty(Mono.error(() -> new MissingPlayerException(String.format("Player with id %s is missing", playerId))));
+    }
+
+    /**
+     * Starts a new tictactoe game.
+     *
+     * @param playerXId the id of the player X
+     * @param playerOId the id of the player O
+     * @return the new game, a MissingPlayerException if a player is not
+     *         found or a GameStateException if a player is already in a game
+     */
+    public Mono<Game> newGame(int playerXId, int playerOId)
+    {
+        return getPlayerById(playerXId).flatMap(playerX -> getPlayerById(playerOId).flatMap(playerO ->
+                notInGame(playerX)
+                        .then(notInGame(playerO))
+                        .then(gameRepo.save(GameRow.of(Game.builder().playerX(playerX).playerO(playerO).build(), null)))
+                        .map(row -> row.toGame(playerX, playerO))));
+    }
+
+    //completes empty, or with a GameStateException if the player is in an active game
+    private Mono<Void> notInGame(Player player)
+    {
+        return gameRepo.existsActiveGame(player.getPlayerId())
+                .flatMap(active -> active
+                        ? Mono.error(new GameStateException(String.format("Player %s already in another game", player.getPlayerId())))
+                        : Mono.empty());
+    }
+
+    /**
+     * Returns all games in id order.
+     *
+     * @return a list of games
+     */
+    public Mono<List<Game>> games()
+    {
+        return toGames(gameRepo.findAllInOrder());
+    }
+
+    /**
+     * Returns a page of games in id order.
+     *
+     * @param after only games with a greater id are returned
+     * @param limit the maximum number of games, up to GameService.MAX_PAGE_SIZE
+     * @return a page of games and the cursor of the next page
+     */
+    public Mono<GamePage> games(int after, int limit)
+    {
+        int pageSize = Math.min(Math.max(limit, 1), GameService.MAX_PAGE_SIZE);
+
+        //read one extra game to find out if there is another page
+        return toGames(gameRepo.findPageAfter(after, pageSize + 1)).map(games -> page(games, pageSize));
+    }
+
+    /**
+     * Returns the first limit games as a page, with the cursor of the
+     * next page if there are more games.
+     *
+     * @param games up to limit + 1 games
+     * @param limit the size of the page
+     * @return a page of games
+     */
+    public static GamePage page(List<Game> games, int limit)
+    {
+        Integer next = null;
+        if (games.size() > limit)
+        {
+            games = games.subList(0, limit);
+            next = games.get(limit - 1).getGameId();
+        }
+        return new GamePage(games, next);
+    }
+
+    /**
+     * Returns the games saved in the input rows, in the same order. The
+     * players of all the games are read with one query.
+     *
+     * @param rows the game rows
+     * @return a list of games
+     */
+    public Mono<List<Game>> toGames(Flux<GameRow> rows)
+    {
+        return rows.collectList().flatMap(list -> {
+            Set<Integer> playerIds = new HashSet<>();
+            for (GameRow row : list)
+            {
+                playerIds.add(row.getPlayerXId());
+                playerIds.add(row.getPlayerOId());
+            }
+            if (playerIds.isEmpty())
+            {
+                return Mono.just(List.of());
+            }
+
+            return playerRepo.findAllById(playerIds)
+                    .collectMap(PlayerRow::getPlayerId, PlayerRow::toPlayer)
+                    .map(players -> toGames(list, players));
+        });
+    }
+
+    private static List<Game> toGames(List<GameRow> rows, Map<Integer, Player> players)
+    {
+        List<Game> games = new ArrayList<>(rows.size());
+        for (GameRow row : rows)
+        {
+            games.add(row.toGame(players.get(row.getPlayerXId()), players.get(row.getPlayerOId())));
+        }
+        return games;
+    }
+
+    /**
+     * Returns a game by id.
+     *
+     * @param gameId the game id
+     * @return the game, or a MissingGameException if not found
+     */
+    public Mono<Game> findById(int gameId)
+    {
+        return findRow(gameId).flatMap(this::toGame);
+    }
+
+    private Mono<GameRow> findRow(int gameId)
+    {
+        return gameRepo.findById(gameId)
+                .switchIfEmpty(Mono.error(() -> new MissingGameException(String.format("Game with id %s missing", gameId))));
+    }
+
+    private Mono<Game> toGame(GameRow row)
+    {
+        return playerRepo.findById(row.getPlayerXId()).map(PlayerRow::toPlayer)
+                .zipWith(playerRepo.findById(row.getPlayerOId()).map(PlayerRow::toPlayer))
+                .map(players -> row.toGame(players.getT1(), players.getT2()));
+    }
+
+    /**
+     * Makes a move in a game of tictactoe. The game and the stats of the
+     * players are saved in one transaction.
+     *
+     * @param gameId the id of the game
+     * @param move the move made
+     * @return the updated game, or the exception GameService.move() would
+     *         have thrown; an OptimisticLockingFailureException if the
+     *         game was changed since it was read
+     */
+    @Transactional
+    public Mono<Game> move(int gameId, GameMove move)
+    {
+        return findRow(gameId).flatMap(row -> toGame(row).flatMap(game ->
+                getPlayerForMove(game, move.getPlayerId()).flatMap(player -> play(row, game, player, move))));
+    }
+
+    private Mono<Game> play(GameRow row, Game game, Player player, GameMove move)
+    {
+        //preconditions
+        if (game.isGameOver())
+        {
+            throw new GameStateException("You cannot make a move once the game is finished.");
+        }
+        else if (!game.isPlayerInMatch(player))
+        {
+            throw new IllegalMoveException(String.format("Player is not part of game with id %s", game.getGameId()));
+        }
+        else if (!game.isPlayerTurn(player))
+        {
+            throw new IllegalMoveException(String.format("It is not player %s's turn", player.getPlayerId()));
+        }
+
+        game.move(player, move.getRow(), move.getCol());
+
+        //the game is saved first, so a failed version check leaves the stats alone
+        Mono<GameRow> saved = gameRepo.save(GameRow.of(game, row.getVersion()));
+        if (game.isDraw() || game.isGameOver())
+        {
+            saved = saved.flatMap(savedRow -> updateStats(game, player).thenReturn(savedRow));
+        }
+        return saved.map(savedRow -> {
+            game.setVersion(savedRow.getVersion());
+            return game;
+        });
+    }
+
+    private Mono<Player> getPlayerForMove(Game game, int playerId)
+    {
+        if (game.getPlayerX().getPlayerId() == playerId)
+        {
+            return Mono.just(game.getPlayerX());
+        }
+        else if (game.getPlayerO().getPlayerId() == playerId)
+        {
+            return Mono.just(game.getPlayerO());
+        }
+        return getPlayerById(playerId);
+    }
+
+    //records the result of a finished game for both players
+    private Mono<Integer> updateStats(Game game, Player mover)
+    {
+        boolean moverIsX = game.isPlayerX(mover);
+
+        //the saved stats are incremented in one statement, the copies only update the response
+        Player player = mover.copy();
+        Player other = game.getOtherPlayer(mover).copy();
+        Mono<Integer> updated;
+        if (game.isDraw())
+        {
+            updated = playerRepo.recordDraw(player.getPlayerId(), other.getPlayerId());
+            other.draw();
+            player.draw();
+        }
+        else
+        {
+            updated = playerRepo.recordWin(player.getPlayerId(), other.getPlayerId());
+            other.lose();
+            player.win();
+        }
+
+        game.setPlayerX(moverIsX ? player : other);
+        game.setPlayerO(moverIsX ? other : player);
+        return updated;
+    }
+
+    /**
+     * Deletes a game.
+     *
+     * @param gameId the game id
+     * @return an empty Mono, or a MissingGameException if the game is not found
+     */
+    public Mono<Void> deleteById(int gameId)
+    {
+        return gameRepo.existsById(gameId).flatMap(exists -> exists
+                ? gameRepo.deleteById(gameId)
+                : Mono.error(new MissingGameException(String.format("Player with id %s missing", gameId))));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "A reactive games service";
+    }
+}
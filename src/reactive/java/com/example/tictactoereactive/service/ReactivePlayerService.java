@@ -0,0 +1,172 @@
+package com.example.tictactoereactive.service;
+
+import com.example.tictactoereactive.entities.GameRow;
+import com.example.tictactoereactive.entities.PlayerRow;
+import com.example.tictactoereactive.repositories.IGameRowRepository;
+import com.example.tictactoereactive.repositories.IPlayerRowRepository;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.GameStatus;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.InvalidNameException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.service.GameService;
+import com.example.tictactoerest.service.PlayerService;
+import com.example.tictactoerest.views.GamePage;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The reactive service layer for players. It follows {@link PlayerService}
+ * for the core routes.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@Service
+public class ReactivePlayerService
+{
+    private IPlayerRowRepository playerRepo;
+    private IGameRowRepository gameRepo;
+    private ReactiveGameService gameService;
+
+    /**
+     * Creates a service over the reactive data layers.
+     *
+     * @param playerRepo the player data layer
+     * @param gameRepo the game data layer
+     * @param gameService the game service, to read the games of a player
+     */
+    public ReactivePlayerService(IPlayerRowRepository playerRepo, IGameRowRepository gameRepo,
+                                 ReactiveGameService gameService)
+    {
+        this.playerRepo = playerRepo;
+        this.gameRepo = gameRepo;
+        this.gameService = gameService;
+    }
+
+    /**
+     * Saves a new player.
+     *
+     * @param player the new player
+     * @return the saved player, an InvalidNameException if the name is
+     *         empty or a GameStateException if a duplicate name is found
+     */
+    public Mono<Player> save(Player player)
+    {
+        if (player.getName().isEmpty())
+        {
+            return Mono.error(new InvalidNameException("Name cannot be empty"));
+        }
+
+        return playerRepo.findByName(player.getName())
+                .hasElement()
+                .flatMap(duplicate -> duplicate
+                        ? Mono.error(new GameStateException("Duplicate name found!"))
+                        : playerRepo.save(PlayerRow.of(player)).map(PlayerRow::toPlayer));
+    }
+
+    /**
+     * Returns all players.
+     *
+     * @return a list of players
+     */
+    public Mono<List<Player>> players()
+    {
+        return playerRepo.findAll().map(PlayerRow::toPlayer).collectList();
+    }
+
+    /**
+     * Finds a player with the given id.
+     *
+     * @param playerId the player id to search for
+     * @return the player, or a MissingPlayerException if not found
+     */
+    public Mono<Player> playerById(int playerId)
+    {
+        return findRow(playerId).map(PlayerRow::toPlayer);
+    }
+
+    private Mono<PlayerRow> findRow(int playerId)
+    {
+        return playerRepo.findById(playerId)
+                .switchIfEmpty(Mono.error(() -> new MissingPlayerException(String.format("Player with id %s missing", playerId))));
+    }
+
+    /**
+     * Returns the games a player was part of, in id order.
+     *
+     * @param player the player to search for
+     * @return a list of games
+     */
+    public Mono<List<Game>> getGamesPlayed(Player player)
+    {
+        return gameService.toGames(gameRepo.findByPlayer(player.getPlayerId()));
+    }
+
+    /**
+     * Returns a page of games the input player was part of, newest first.
+     *
+     * @param player the player to search for
+     * @param before only games with a smaller id are returned
+     * @param limit the maximum number of games, up to GameService.MAX_PAGE_SIZE
+     * @param status only return active or finished games, or all games if null
+     * @return a page of games and the cursor of the next page
+     */
+    public Mono<GamePage> getGamesPlayed(Player player, int before, int limit, GameStatus status)
+    {
+        int pageSize = Math.min(Math.max(limit, 1), GameService.MAX_PAGE_SIZE);
+
+        //read one extra game to find out if there is another page
+        Flux<GameRow> rows;
+        if (status == GameStatus.ACTIVE)
+        {
+            rows = gameRepo.findActiveHistoryBefore(player.getPlayerId(), before, pageSize + 1);
+        }
+        else if (status == GameStatus.FINISHED)
+        {
+            rows = gameRepo.findFinishedHistoryBefore(player.getPlayerId(), before, pageSize + 1);
+        }
+        else
+        {
+            rows = gameRepo.findHistoryBefore(player.getPlayerId(), before, pageSize + 1);
+        }
+        return gameService.toGames(rows).map(games -> ReactiveGameService.page(games, pageSize));
+    }
+
+    /**
+     * Updates the name of a player.
+     *
+     * @param updatedPlayer the updated player object
+     * @return the saved player, or a MissingPlayerException if not found
+     */
+    public Mono<Player> updatePlayer(Player updatedPlayer)
+    {
+        return findRow(updatedPlayer.getPlayerId())
+                .flatMap(row -> {
+                    row.setName(updatedPlayer.getName());
+                    return playerRepo.save(row);
+                })
+                .map(PlayerRow::toPlayer);
+    }
+
+    /**
+     * Deletes a player with the matching id.
+     *
+     * @param playerId the player id to search for
+     * @return an empty Mono, or a MissingPlayerException if not found
+     */
+    public Mono<Void> deletePlayer(int playerId)
+    {
+        return findRow(playerId).flatMap(row -> playerRepo.deleteById(playerId));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "A reactive players service";
+    }
+}
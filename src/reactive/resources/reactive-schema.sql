@@ -0,0 +1,26 @@
+CREATE TABLE IF NOT EXISTS player
+(
+    player_id INT AUTO_INCREMENT PRIMARY KEY,
+    name      VARCHAR(255),
+    wins      INT NOT NULL DEFAULT 0,
+    losses    INT NOT NULL DEFAULT 0,
+    draws     INT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS game
+(
+    game_id     INT AUTO_INCREMENT PRIMARY KEY,
+    player_x_id INT     NOT NULL REFERENCES player (player_id),
+    player_o_id INT     NOT NULL REFERENCES player (player_id),
+    board       INT     NOT NULL,
+    turn        INT     NOT NULL,
+    gameover    BOOLEAN NOT NULL,
+    draw        BOOLEAN NOT NULL,
+    version     INT     NOT NULL
+);
+
+-- finds the active game of a player, and reads their history newest first
+CREATE INDEX IF NOT EXISTS idx_game_player_x_active ON game (player_x_id, gameover, draw);
+CREATE INDEX IF NOT EXISTS idx_game_player_o_active ON game (player_o_id, gameover, draw);
+CREATE INDEX IF NOT EXISTS idx_game_player_x_history ON game (player_x_id, game_id);
+CREATE INDEX IF NOT EXISTS idx_game_player_o_history ON game (player_o_id, game_id);
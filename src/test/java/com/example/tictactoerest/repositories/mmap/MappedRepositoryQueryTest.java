@@ -0,0 +1,96 @@
+package com.example.tictactoerest.repositories.mmap;
+
+import com.example.tictactoerest.entities.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the sorting, paging and query-by-example methods of the
+ * memory-mapped repositories, which are done in memory.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class MappedRepositoryQueryTest
+{
+    //primitive fields of a probe take part, so they are ignored unless a test sets them
+    private static final ExampleMatcher BY_NAME = ExampleMatcher.matching()
+            .withIgnorePaths("playerId", "wins", "losses", "draws");
+
+    @TempDir
+    Path directory;
+
+    private MappedPlayerRepository players;
+
+    @BeforeEach
+    public void open()
+    {
+        players = new MappedPlayerRepository(directory.resolve("players.dat"), false);
+        players.save(new Player(0, "carol", 3, 0, 1));
+        players.save(new Player(0, "alice", 5, 1, 0));
+        players.save(new Player(0, "Bob", 3, 2, 0));
+        players.save(new Player(0, "alan", 0, 4, 0));
+    }
+
+    @AfterEach
+    public void close()
+    {
+        players.close();
+    }
+
+    @Test
+    public void sortsByEachOrderInTurn()
+    {
+        List<Player> sorted = players.findAll(Sort.by(Sort.Order.desc("wins"), Sort.Order.asc("name").ignoreCase()));
+        assertEquals(List.of("alice", "Bob", "carol", "alan"), names(sorted));
+    }
+
+    @Test
+    public void pagesSortedPlayers()
+    {
+        Page<Player> page = players.findAll(PageRequest.of(1, 3, Sort.by("name")));
+        assertEquals(List.of("carol"), names(page.getContent()));
+        assertEquals(4, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+    }
+
+    @Test
+    public void findsPlayersByExample()
+    {
+        Example<Player> starting = Example.of(new Player(0, "AL", 0, 0, 0),
+                BY_NAME.withStringMatcher(ExampleMatcher.StringMatcher.STARTING).withIgnoreCase());
+        assertEquals(List.of("alan", "alice"), names(players.findAll(starting, Sort.by("name"))));
+        assertEquals(2, players.count(starting));
+
+        //a primitive field that is not ignored must match
+        Example<Player> winless = Example.of(new Player(0, "al", 0, 0, 0),
+                ExampleMatcher.matching().withIgnorePaths("playerId", "losses", "draws")
+                        .withStringMatcher(ExampleMatcher.StringMatcher.STARTING));
+        assertEquals(List.of("alan"), names(players.findAll(winless)));
+
+        assertEquals("Bob", players.findOne(Example.of(new Player(0, "Bob", 0, 0, 0), BY_NAME)).orElseThrow().getName());
+        assertFalse(players.exists(Example.of(new Player(0, "dave", 0, 0, 0), BY_NAME)));
+        assertThrows(IncorrectResultSizeDataAccessException.class,
+                () -> players.findOne(Example.of(new Player(0, "a", 0, 0, 0),
+                        BY_NAME.withStringMatcher(ExampleMatcher.StringMatcher.STARTING))));
+    }
+
+    private static List<String> names(List<Player> players)
+    {
+        return players.stream().map(Player::getName).collect(Collectors.toList());
+    }
+}
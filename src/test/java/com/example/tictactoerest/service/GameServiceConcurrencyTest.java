@@ -0,0 +1,267 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.commands.GameMove;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.IllegalMoveException;
+import com.example.tictactoerest.repositories.ActiveGameStore;
+import com.example.tictactoerest.repositories.GameLocks;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests for moves made from many threads at once: in the same
+ * game, and in different games that share a lock stripe. The scheduled
+ * flush is turned off, and flushes are run by a thread of their own.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"tictactoe.write-behind.flush-interval-ms=3600000",
+                //the last flush runs when the context closes, after the JVM shutdown hook of H2
+                "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_ON_EXIT=FALSE"})
+public class GameServiceConcurrencyTest
+{
+    private static final int THREADS = 16;
+
+    //row and column of each move in a game that player X wins
+    private static final int[][] X_WINS = {{0, 0}, {1, 1}, {0, 1}, {2, 2}, {0, 2}};
+
+    @Autowired
+    private GameService games;
+    @Autowired
+    private PlayerService players;
+    @Autowired
+    private LeaderboardService leaderboard;
+    @Autowired
+    private ActiveGameStore activeGames;
+    @Autowired
+    private GameLocks locks;
+    @Autowired
+    private IPlayerRepository playerRepo;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    public void racingMovesInOneGameGiveOneResult() throws Exception
+    {
+        for (int round = 0; round < 20; round++)
+        {
+            int playerXId = newPlayer();
+            int playerOId = newPlayer();
+            int gameId = games.newGame(playerXId, playerOId).getGameId();
+
+            //every thread tries random moves for either player until the game is over
+            AtomicInteger made = new AtomicInteger();
+            runAll(THREADS, thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!isFinished(games.getGameById(gameId)))
+                {
+                    int playerId = random.nextBoolean() ? playerXId : playerOId;
+                    try
+                    {
+                        games.move(gameId, new GameMove(playerId, random.nextInt(3), random.nextInt(3)));
+                        made.incrementAndGet();
+                    }
+                    catch (IllegalMoveException | GameStateException ex)
+                    {
+                        //not this player's turn, a taken cell, or the game just ended
+                    }
+                }
+            });
+
+            Game game = games.getGameById(gameId);
+            assertTrue(isFinished(game));
+            assertEquals(made.get(), game.getTurn());
+            assertEquals(game.getTurn(), tokens(game));
+
+            Player x = playerRepo.findById(playerXId).orElseThrow();
+            Player o = playerRepo.findById(playerOId).orElseThrow();
+            if (game.isDraw())
+            {
+                assertStats(x, 0, 0, 1);
+                assertStats(o, 0, 0, 1);
+            }
+            else
+            {
+                //exactly one winner, and the other player lost
+                assertEquals(1, x.getWins() + o.getWins());
+                assertEquals(x.getWins(), o.getLosses());
+                assertEquals(o.getWins(), x.getLosses());
+                assertEquals(0, x.getDraws() + o.getDraws());
+            }
+            assertEquals(x.getWins(), leaderboard.standing(playerXId).getWins());
+            assertEquals(o.getWins(), leaderboard.standing(playerOId).getWins());
+        }
+    }
+
+    @Test
+    public void gamesSharingALockStripeArePlayedIndependently() throws Exception
+    {
+        //start enough games that many of them share a stripe with another game
+        Map<Integer, List<int[]>> stripes = new HashMap<>();
+        for (int i = 0; i < 300; i++)
+        {
+            int playerXId = newPlayer();
+            int playerOId = newPlayer();
+            int gameId = games.newGame(playerXId, playerOId).getGameId();
+            stripes.computeIfAbsent(locks.stripeOf(gameId), stripe -> new ArrayList<>())
+                    .add(new int[]{gameId, playerXId, playerOId});
+        }
+
+        List<int[]> shared = new ArrayList<>();
+        for (List<int[]> stripe : stripes.values())
+        {
+            if (stripe.size() > 1)
+            {
+                shared.addAll(stripe);
+            }
+        }
+        assertFalse(shared.isEmpty());
+
+        //each thread plays its games to the end while another thread keeps flushing
+        AtomicInteger next = new AtomicInteger();
+        runAll(THREADS + 1, thread -> {
+            if (thread == THREADS)
+            {
+                while (next.get() < shared.size())
+                {
+                    activeGames.flush();
+                }
+                return;
+            }
+
+            for (int i = next.getAndIncrement(); i < shared.size(); i = next.getAndIncrement())
+            {
+                int[] match = shared.get(i);
+                for (int ply = 0; ply < X_WINS.length; ply++)
+                {
+                    int playerId = ply % 2 == 0 ? match[1] : match[2];
+                    games.move(match[0], new GameMove(playerId, X_WINS[ply][0], X_WINS[ply][1]));
+                }
+            }
+        });
+
+        for (int[] match : shared)
+        {
+            Game game = games.getGameById(match[0]);
+            assertTrue(game.isGameOver());
+            assertFalse(game.isDraw());
+            assertEquals(X_WINS.length, game.getTurn());
+            assertStats(playerRepo.findById(match[1]).orElseThrow(), 1, 0, 0);
+            assertStats(playerRepo.findById(match[2]).orElseThrow(), 0, 1, 0);
+        }
+    }
+
+    @Test
+    public void failedSaveOfAFinishedGameLeavesTheStatsUnchanged()
+    {
+        int playerXId = newPlayer();
+        int playerOId = newPlayer();
+        int gameId = games.newGame(playerXId, playerOId).getGameId();
+        for (int ply = 0; ply < X_WINS.length - 1; ply++)
+        {
+            int playerId = ply % 2 == 0 ? playerXId : playerOId;
+            games.move(gameId, new GameMove(playerId, X_WINS[ply][0], X_WINS[ply][1]));
+        }
+
+        //the saved game changes behind the store, so the winning move cannot be saved
+        jdbc.update("update game set version = version + 1 where game_id = ?", gameId);
+        int[] last = X_WINS[X_WINS.length - 1];
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> games.move(gameId, new GameMove(playerXId, last[0], last[1])));
+
+        assertStats(playerRepo.findById(playerXId).orElseThrow(), 0, 0, 0);
+        assertStats(playerRepo.findById(playerOId).orElseThrow(), 0, 0, 0);
+        assertEquals(0, leaderboard.standing(playerXId).getWins());
+        assertFalse(games.getGameById(gameId).isGameOver());
+    }
+
+    private int newPlayer()
+    {
+        return players.save(Player.builder().name(UUID.randomUUID().toString()).build()).getPlayerId();
+    }
+
+    //runs a task on each of a number of threads, started together, and rethrows the first failure
+    private static void runAll(int threads, ThreadTask task) throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < threads; i++)
+            {
+                int thread = i;
+                running.add(pool.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : running)
+            {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    private static boolean isFinished(Game game)
+    {
+        return game.isGameOver() || game.isDraw();
+    }
+
+    //the number of cells taken on the board
+    private static int tokens(Game game)
+    {
+        int count = 0;
+        for (char cell : game.getGameState())
+        {
+            if (cell != ' ')
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertStats(Player player, int wins, int losses, int draws)
+    {
+        assertEquals(wins, player.getWins(), "wins of player " + player.getPlayerId());
+        assertEquals(losses, player.getLosses(), "losses of player " + player.getPlayerId());
+        assertEquals(draws, player.getDraws(), "draws of player " + player.getPlayerId());
+    }
+
+    //a task run on one of the threads of runAll()
+    private interface ThreadTask
+    {
+        void run(int thread) throws Exception;
+    }
+}
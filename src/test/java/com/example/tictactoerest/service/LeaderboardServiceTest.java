@@ -0,0 +1,186 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.views.Standing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ranks of the in-memory leaderboard: top-N pages, ties,
+ * the Fenwick tree behind standing(), and pages read while games
+ * finish.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class LeaderboardServiceTest
+{
+    private LeaderboardService leaderboard;
+
+    @BeforeEach
+    public void load()
+    {
+        IPlayerRepository playerRepo = mock(IPlayerRepository.class);
+        when(playerRepo.findAll()).thenReturn(List.of(
+                new Player(1, "alice", 5, 0, 0),
+                new Player(2, "bob", 3, 1, 0),
+                new Player(3, "carol", 3, 2, 0),
+                new Player(4, "dave", 0, 4, 0)));
+        leaderboard = new LeaderboardService(playerRepo);
+        leaderboard.rebuild();
+    }
+
+    @Test
+    public void playersWithTheSameWinsShareARank()
+    {
+        List<Standing> top = leaderboard.top(10);
+        assertEquals(List.of(1, 2, 3, 4), ids(top));
+        assertEquals(List.of(1, 2, 2, 4), ranks(top));
+
+        //standing() counts in the tree, and must agree with the page
+        for (Standing standing : top)
+        {
+            assertEquals(standing, leaderboard.standing(standing.getPlayerId()));
+        }
+    }
+
+    @Test
+    public void topIsCutAtTheLimit()
+    {
+        assertEquals(List.of(1, 2), ids(leaderboard.top(2)));
+        assertEquals(List.of(1), ids(leaderboard.top(0)));
+    }
+
+    @Test
+    public void finishedGamesMovePlayers()
+    {
+        leaderboard.recordWin(3, 2);
+        assertEquals(List.of(1, 3, 2, 4), ids(leaderboard.top(10)));
+        assertEquals(List.of(1, 2, 3, 4), ranks(leaderboard.top(10)));
+        assertEquals(2, leaderboard.standing(2).getLosses());
+
+        leaderboard.recordDraw(1, 4);
+        assertEquals(1, leaderboard.standing(4).getDraws());
+
+        leaderboard.delete(1);
+        assertEquals(1, leaderboard.standing(3).getRank());
+        assertEquals(3, leaderboard.size());
+        assertThrows(MissingPlayerException.class, () -> leaderboard.standing(1));
+    }
+
+    @Test
+    public void ranksHoldPastTheFirstTreeSize()
+    {
+        //the tree starts with room for 63 wins and grows as needed
+        leaderboard.save(new Player(5, "erin", 100, 0, 0));
+        for (int i = 0; i < 70; i++)
+        {
+            leaderboard.recordWin(4, 2);
+        }
+
+        assertEquals(List.of(5, 4, 1, 2, 3), ids(leaderboard.top(10)));
+        assertEquals(List.of(1, 2, 3, 4, 4), ranks(leaderboard.top(10)));
+        assertEquals(2, leaderboard.standing(4).getRank());
+        assertEquals(4, leaderboard.standing(3).getRank());
+    }
+
+    @Test
+    public void pagesReadWhileGamesFinishListEveryPlayerOnce() throws Exception
+    {
+        for (int playerId = 5; playerId <= 200; playerId++)
+        {
+            leaderboard.save(new Player(playerId, "player" + playerId, 0, 0, 0));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<?>> running = new ArrayList<>();
+            for (int writer = 0; writer < 2; writer++)
+            {
+                running.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20000; i++)
+                    {
+                        leaderboard.recordWin(random.nextInt(1, 201), random.nextInt(1, 201));
+                    }
+                    return null;
+                }));
+            }
+            for (int reader = 0; reader < 2; reader++)
+            {
+                running.add(pool.submit(() -> {
+                    while (!done.get())
+                    {
+                        assertConsistent(leaderboard.top(GameService.MAX_PAGE_SIZE), 200);
+                    }
+                    return null;
+                }));
+            }
+
+            running.get(0).get(1, TimeUnit.MINUTES);
+            running.get(1).get(1, TimeUnit.MINUTES);
+            done.set(true);
+            for (Future<?> future : running)
+            {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        assertConsistent(leaderboard.top(GameService.MAX_PAGE_SIZE), 200);
+    }
+
+    //every player once, best first, each rank one more than the number of players with more wins
+    private static void assertConsistent(List<Standing> top, int players)
+    {
+        assertEquals(players, top.size());
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < top.size(); i++)
+        {
+            Standing standing = top.get(i);
+            assertTrue(seen.add(standing.getPlayerId()), "player listed twice");
+            if (i > 0 && top.get(i - 1).getWins() == standing.getWins())
+            {
+                assertEquals(top.get(i - 1).getRank(), standing.getRank());
+            }
+            else
+            {
+                assertTrue(i == 0 || top.get(i - 1).getWins() > standing.getWins());
+                assertEquals(i + 1, standing.getRank());
+            }
+        }
+    }
+
+    private static List<Integer> ids(List<Standing> standings)
+    {
+        return standings.stream().map(Standing::getPlayerId).collect(Collectors.toList());
+    }
+
+    private static List<Integer> ranks(List<Standing> standings)
+    {
+        return standings.stream().map(Standing::getRank).collect(Collectors.toList());
+    }
+}
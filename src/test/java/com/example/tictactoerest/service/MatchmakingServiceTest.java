@@ -0,0 +1,216 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.commands.MatchUp;
+import com.example.tictactoerest.entities.Game;
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.exceptions.GameStateException;
+import com.example.tictactoerest.exceptions.MissingPlayerException;
+import com.example.tictactoerest.views.BatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the pairing rules of the matchmaker: players are paired within
+ * their win-rate band, with the next band once they have waited long
+ * enough, and leave the queue when they expire, leave or can no longer
+ * play. Pairing passes are run by the tests instead of the scheduler.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class MatchmakingServiceTest
+{
+    private static final long WAIT_MS = 60000;
+
+    private GameService games;
+    private final Map<Integer, Player> players = new HashMap<>();
+
+    //the match ups of every batch of games started
+    private final List<MatchUp> started = new ArrayList<>();
+
+    @BeforeEach
+    public void mockGames()
+    {
+        games = mock(GameService.class);
+        when(games.getPlayerById(anyInt())).thenAnswer(call -> {
+            Player player = players.get(call.<Integer>getArgument(0));
+            if (player == null)
+            {
+                throw new MissingPlayerException("Player is missing");
+            }
+            return player;
+        });
+        when(games.newGames(anyList())).thenAnswer(call -> {
+            List<BatchResult> results = new ArrayList<>();
+            for (MatchUp matchUp : call.<List<MatchUp>>getArgument(0))
+            {
+                started.add(matchUp);
+                results.add(BatchResult.success(HttpStatus.CREATED, Game.builder()
+                        .gameId(started.size())
+                        .playerX(players.get(matchUp.getPlayerXId()))
+                        .playerO(players.get(matchUp.getPlayerOId()))
+                        .build()));
+            }
+            return results;
+        });
+    }
+
+    @Test
+    public void playersInTheSameBandArePaired() throws Exception
+    {
+        //fewer than five games places both players in the middle band
+        addPlayer(1, 0, 0);
+        addPlayer(2, 1, 2);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> first = matchmaker.enqueue(1, WAIT_MS);
+        Thread.sleep(5);
+        CompletableFuture<Game> second = matchmaker.enqueue(2, WAIT_MS);
+        assertEquals(2, matchmaker.size());
+
+        matchmaker.pair();
+        assertEquals(List.of(new MatchUp(1, 2)), started);
+        assertSame(first.get(), second.get());
+        assertEquals(0, matchmaker.size());
+    }
+
+    @Test
+    public void playersInNeighbouringBandsArePairedOnlyAfterWaiting() throws Exception
+    {
+        addPlayer(1, 10, 0); //all wins, top band
+        addPlayer(2, 7, 3);  //the band below
+        MatchmakingService patient = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> first = patient.enqueue(1, WAIT_MS);
+        CompletableFuture<Game> second = patient.enqueue(2, WAIT_MS);
+
+        patient.pair();
+        verify(games, never()).newGames(anyList());
+        assertFalse(first.isDone() || second.isDone());
+        assertEquals(2, patient.size());
+
+        //the same players with no wait before widening are paired with the next band
+        patient.leave(1);
+        patient.leave(2);
+        MatchmakingService eager = new MatchmakingService(games, 5, 0);
+        first = eager.enqueue(1, WAIT_MS);
+        second = eager.enqueue(2, WAIT_MS);
+        eager.pair();
+        assertEquals(1, started.size());
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    public void bandsFurtherApartAreNeverPaired()
+    {
+        addPlayer(1, 10, 0);
+        addPlayer(2, 0, 10);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, 0);
+        matchmaker.enqueue(1, WAIT_MS);
+        matchmaker.enqueue(2, WAIT_MS);
+
+        matchmaker.pair();
+        matchmaker.pair();
+        assertTrue(started.isEmpty());
+        assertEquals(2, matchmaker.size());
+    }
+
+    @Test
+    public void playersPastTheirDeadlineExpire()
+    {
+        addPlayer(1, 0, 0);
+        addPlayer(2, 0, 0);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> expired = matchmaker.enqueue(1, -1);
+        CompletableFuture<Game> waiting = matchmaker.enqueue(2, WAIT_MS);
+
+        matchmaker.pair();
+        ExecutionException ex = assertThrows(ExecutionException.class, expired::get);
+        assertTrue(ex.getCause() instanceof TimeoutException);
+        assertFalse(waiting.isDone());
+        assertEquals(1, matchmaker.size());
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void playersWhoLeaveAreNotPaired()
+    {
+        addPlayer(1, 0, 0);
+        addPlayer(2, 0, 0);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> left = matchmaker.enqueue(1, WAIT_MS);
+        matchmaker.leave(1);
+        assertTrue(left.isCancelled());
+        assertThrows(MissingPlayerException.class, () -> matchmaker.leave(1));
+
+        CompletableFuture<Game> waiting = matchmaker.enqueue(2, WAIT_MS);
+        matchmaker.pair();
+        assertTrue(started.isEmpty());
+        assertFalse(waiting.isDone());
+        assertEquals(1, matchmaker.size());
+    }
+
+    @Test
+    public void aPlayerWhoCannotStartIsDroppedAndTheOtherRequeued() throws Exception
+    {
+        addPlayer(1, 0, 0);
+        addPlayer(2, 0, 0);
+        addPlayer(3, 0, 0);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> busy = matchmaker.enqueue(1, WAIT_MS);
+        CompletableFuture<Game> requeued = matchmaker.enqueue(2, WAIT_MS);
+
+        //player 1 started a game elsewhere after queueing
+        when(games.newGames(anyList())).thenReturn(List.of(BatchResult.failure(
+                new GameStateException("Player 1 already in another game"))));
+        when(games.alreadyInGame(players.get(1))).thenReturn(true);
+        matchmaker.pair();
+
+        ExecutionException ex = assertThrows(ExecutionException.class, busy::get);
+        assertTrue(ex.getCause() instanceof GameStateException);
+        assertFalse(requeued.isDone());
+        assertEquals(1, matchmaker.size());
+
+        //the requeued player is paired in the next pass
+        when(games.newGames(anyList())).thenReturn(List.of(BatchResult.success(HttpStatus.CREATED,
+                Game.builder().gameId(7).playerX(players.get(2)).playerO(players.get(3)).build())));
+        CompletableFuture<Game> other = matchmaker.enqueue(3, WAIT_MS);
+        matchmaker.pair();
+        assertEquals(7, requeued.get().getGameId());
+        assertSame(requeued.get(), other.get());
+    }
+
+    @Test
+    public void queueingAgainKeepsTheSameTicket()
+    {
+        addPlayer(1, 0, 0);
+        MatchmakingService matchmaker = new MatchmakingService(games, 5, WAIT_MS);
+        CompletableFuture<Game> first = matchmaker.enqueue(1, -1);
+        assertSame(first, matchmaker.enqueue(1, WAIT_MS));
+
+        //the later deadline is kept, so the player does not expire
+        matchmaker.pair();
+        assertFalse(first.isDone());
+        assertEquals(1, matchmaker.size());
+    }
+
+    private void addPlayer(int playerId, int wins, int losses)
+    {
+        players.put(playerId, new Player(playerId, "player" + playerId, wins, losses, 0));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.tictactoerest.service;
+
+import com.example.tictactoerest.entities.Player;
+import com.example.tictactoerest.repositories.IPlayerRepository;
+import com.example.tictactoerest.views.PlayerName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the prefix search of the in-memory player name index, which
+ * ignores case, and the updates made as players are renamed or
+ * deleted.
+ *
+ * @author Josh Archer
+ * @version 1.0
+ */
+public class PlayerNameIndexTest
+{
+    private PlayerNameIndex names;
+
+    @BeforeEach
+    public void load()
+    {
+        IPlayerRepository playerRepo = mock(IPlayerRepository.class);
+        when(playerRepo.findAll()).thenReturn(List.of(
+                new Player(1, "alice", 0, 0, 0),
+                new Player(2, "Alan", 0, 0, 0),
+                new Player(3, "ALBERT", 0, 0, 0),
+                new Player(4, "bob", 0, 0, 0),
+                new Player(5, "al", 0, 0, 0),
+                new Player(6, null, 0, 0, 0)));
+        names = new PlayerNameIndex(playerRepo);
+        names.rebuild();
+    }
+
+    @Test
+    public void findsNamesByPrefixIgnoringCase()
+    {
+        assertEquals(List.of("al", "Alan", "ALBERT", "alice"), found("al", 10));
+        assertEquals(List.of("al", "Alan", "ALBERT", "alice"), found("AL", 10));
+        assertEquals(List.of("ALBERT"), found("alB", 10));
+        assertEquals(List.of(), found("carol", 10));
+
+        //players without a name are left out
+        assertEquals(5, names.size());
+        assertEquals(List.of("al", "Alan", "ALBERT", "alice", "bob"), found("", 10));
+    }
+
+    @Test
+    public void mixedCaseNamesAreKeptApart()
+    {
+        names.save(new Player(7, "Al", 0, 0, 0));
+        assertEquals(List.of("Al", "al"), found("al", 2));
+
+        //contains() matches the exact name only
+        assertTrue(names.contains("Al"));
+        assertTrue(names.contains("al"));
+        assertFalse(names.contains("aL"));
+        assertFalse(names.contains(null));
+    }
+
+    @Test
+    public void searchesAreCutAtTheLimit()
+    {
+        assertEquals(List.of("al", "Alan"), found("a", 2));
+        assertEquals(List.of("al"), found("a", 0));
+    }
+
+    @Test
+    public void renamesMoveTheEntry()
+    {
+        names.save(new Player(4, "Alfred", 0, 0, 0));
+        assertEquals(List.of("al", "Alan", "ALBERT", "Alfred", "alice"), found("al", 10));
+        assertEquals(List.of(), found("b", 10));
+        assertFalse(names.contains("bob"));
+        assertEquals(5, names.size());
+
+        //the player keeps their id under the new name
+        assertEquals(4, names.search("alf", 1).get(0).getPlayerId());
+    }
+
+    @Test
+    public void deletedPlayersAreRemoved()
+    {
+        names.delete(1);
+        assertEquals(List.of("al", "Alan", "ALBERT"), found("al", 10));
+
+        //a player whose name is cleared leaves the index too
+        names.save(new Player(2, null, 0, 0, 0));
+        assertEquals(List.of("al", "ALBERT"), found("al", 10));
+        assertEquals(3, names.size());
+    }
+
+    private List<String> found(String prefix, int limit)
+    {
+        return names.search(prefix, limit).stream().map(PlayerName::getName).collect(Collectors.toList());
+    }
+}